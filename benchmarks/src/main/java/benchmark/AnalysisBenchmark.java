@@ -0,0 +1,42 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import utils.LuceneTools;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Analysis of queries, article texts and table labels.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnalysisBenchmark {
+
+    @Benchmark
+    public List<String> tokenizeQuery(RetrievalState state) {
+        var queries = state.queries;
+        return LuceneTools.tokenizeString(LuceneTools.englishAnalyzer(), queries[state.next() % queries.length]);
+    }
+
+    @Benchmark
+    public List<String> tokenizeArticle(RetrievalState state) {
+        var articles = state.articles;
+        return LuceneTools.tokenizeString(LuceneTools.englishAnalyzer(), articles[state.next() % articles.length]);
+    }
+
+    @Benchmark
+    public List<String> getDocumentLabels(RetrievalState state) {
+        var documents = state.documents;
+        return state.tableStrategy.getDocumentLabels(documents[state.next() % documents.length]);
+    }
+}
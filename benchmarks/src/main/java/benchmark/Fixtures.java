@@ -0,0 +1,174 @@
+package benchmark;
+
+import index.ENWikiIndexer;
+import index.TableIndexer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import strategy.enwiki.ENWikiIndexStrategy;
+import strategy.table.TableStrategy;
+import utils.LuceneTools;
+import word_embedding.MappedWordEmbeddings;
+import word_embedding.MappedWordEmbeddingsWriter;
+import word_embedding.WordEmbeddings;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Small synthetic corpus generated under a temporary directory: a tables JSON file, a wiki XML dump whose
+ * page titles are the tables' page titles, a tiny memory-mapped embedding model over the analyzed vocabulary,
+ * and both indexes built from them.
+ * <p>
+ * Everything is derived from a fixed seed, so every trial measures the same corpus.
+ */
+final class Fixtures {
+
+    static final int DIMENSION = 50;
+    static final int VOCABULARY_SIZE = 2_000;
+    static final int TABLES = 5_000;
+    static final int PAGES = 500;
+    static final int WIKI_PAGE_WORDS = 300;
+
+    private static final long SEED = 42;
+
+    final Path root;
+    final Path tablesIndexDirectory;
+    final Path enWikiIndexDirectory;
+    final List<String> vocabulary;
+    final WordEmbeddings wordEmbeddings;
+
+    private final Random random = new Random(SEED);
+
+    /**
+     * Generates the corpus and builds the indexes.
+     *
+     * @param tableStrategy          how the tables are indexed
+     * @param precomputedEmbeddings  whether the label and article mean vectors are stored at indexing time
+     */
+    Fixtures(TableStrategy tableStrategy, boolean precomputedEmbeddings) throws IOException {
+        this.root = Files.createTempDirectory("tableir-benchmark");
+        this.vocabulary = generateVocabulary();
+        this.wordEmbeddings = writeEmbeddings(root.resolve("vectors"));
+
+        var tablesDirectory = Files.createDirectories(root.resolve("tables"));
+        writeTables(tablesDirectory.resolve("re_tables-0001.json"));
+        var dumpFile = root.resolve("enwiki.xml");
+        writeDump(dumpFile);
+
+        this.tablesIndexDirectory = root.resolve("tables_index");
+        try (var tableIndexer = new TableIndexer(tableStrategy, tablesIndexDirectory,
+                precomputedEmbeddings ? wordEmbeddings : null, 1, 64)) {
+            tableIndexer.index(tablesDirectory);
+        }
+        this.enWikiIndexDirectory = root.resolve("wiki_index");
+        var enWikiIndexStrategy = precomputedEmbeddings
+                ? new ENWikiIndexStrategy(wordEmbeddings)
+                : new ENWikiIndexStrategy();
+        try (var enWikiIndexer = new ENWikiIndexer(enWikiIndexStrategy, enWikiIndexDirectory)) {
+            enWikiIndexer.index(dumpFile);
+        }
+    }
+
+    /**
+     * @return query of a few vocabulary words
+     */
+    String randomQuery(int words) {
+        return String.join(" ", randomWords(words));
+    }
+
+    String pageTitle(int page) {
+        return "Page " + page + " " + vocabulary.get(page % vocabulary.size());
+    }
+
+    void delete() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (var path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private List<String> generateVocabulary() {
+        var words = new LinkedHashSet<String>();
+        while (words.size() < VOCABULARY_SIZE) {
+            var word = new StringBuilder();
+            var length = 3 + random.nextInt(7);
+            for (int i = 0; i < length; i++) {
+                word.append((char) ('a' + random.nextInt(26)));
+            }
+            // stop words are dropped by the analyzer and would never be looked up
+            if (!LuceneTools.tokenizeString(LuceneTools.englishAnalyzer(), word.toString()).isEmpty()) {
+                words.add(word.toString());
+            }
+        }
+        return new ArrayList<>(words);
+    }
+
+    /**
+     * Writes a vector for the analyzed form of every vocabulary word, as the model is looked up with analyzed tokens.
+     */
+    private WordEmbeddings writeEmbeddings(Path basePath) throws IOException {
+        try (var writer = new MappedWordEmbeddingsWriter(basePath, DIMENSION)) {
+            for (var word : vocabulary) {
+                var vector = new float[DIMENSION];
+                for (int i = 0; i < DIMENSION; i++) {
+                    vector[i] = (float) random.nextGaussian();
+                }
+                for (var token : LuceneTools.tokenizeString(LuceneTools.englishAnalyzer(), word)) {
+                    writer.add(token, vector);
+                }
+            }
+        }
+        return MappedWordEmbeddings.open(basePath);
+    }
+
+    private void writeTables(Path tablesFile) throws IOException {
+        var tables = new JSONObject();
+        for (int i = 0; i < TABLES; i++) {
+            var numCols = 2 + random.nextInt(4);
+            var numDataRows = 2 + random.nextInt(8);
+            var data = new JSONArray();
+            for (int row = 0; row < numDataRows; row++) {
+                data.put(new JSONArray(randomWords(numCols)));
+            }
+            tables.put("table-0001-" + i, new JSONObject()
+                    .put("title", new JSONArray(randomWords(numCols)))
+                    .put("data", data)
+                    .put("caption", randomQuery(3))
+                    .put("secondTitle", randomQuery(2))
+                    .put("pgTitle", pageTitle(random.nextInt(PAGES)))
+                    .put("numCols", numCols)
+                    .put("numDataRows", numDataRows)
+                    .put("numHeaderRows", 1)
+                    .put("numericColumns", new JSONArray()));
+        }
+        Files.writeString(tablesFile, tables.toString());
+    }
+
+    private void writeDump(Path dumpFile) throws IOException {
+        try (var writer = Files.newBufferedWriter(dumpFile)) {
+            writer.write("<mediawiki>\n");
+            for (int page = 0; page < PAGES; page++) {
+                writer.write("<page><title>" + pageTitle(page) + "</title><id>" + (page + 1) + "</id>"
+                        + "<revision><id>" + (PAGES + page + 1) + "</id><text>" + randomQuery(WIKI_PAGE_WORDS)
+                        + "</text></revision></page>\n");
+            }
+            writer.write("</mediawiki>\n");
+        }
+    }
+
+    private List<String> randomWords(int words) {
+        var randomWords = new ArrayList<String>(words);
+        for (int i = 0; i < words; i++) {
+            randomWords.add(vocabulary.get(random.nextInt(vocabulary.size())));
+        }
+        return randomWords;
+    }
+}
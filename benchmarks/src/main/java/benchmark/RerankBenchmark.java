@@ -0,0 +1,41 @@
+package benchmark;
+
+import org.apache.lucene.search.ScoreDoc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Re-ranking of a single candidate and of the first stage candidates of a query.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RerankBenchmark {
+
+    @Benchmark
+    public float calculateScore(RetrievalState state) throws IOException {
+        var next = state.next();
+        var documents = state.documents;
+        var queries = state.queries;
+        return state.tableReranker.calculateScore(documents[next % documents.length], queries[next % queries.length]);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public ScoreDoc[] rerank(RetrievalState state) throws IOException {
+        var next = state.next() % state.queries.length;
+        // rerank may re-order the array it is given, so each invocation gets a fresh copy
+        var candidates = state.candidates[next].clone();
+        return state.tableReranker.rerank(candidates, state.indexSearcher, state.queries[next]);
+    }
+}
@@ -0,0 +1,110 @@
+package benchmark;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import search.ENWikiSearcher;
+import search.TableReranker;
+import search.TableSearcher;
+import strategy.table.TableStrategy;
+import strategy.table.TableStrategyFactory;
+
+import java.io.IOException;
+
+/**
+ * Warm searcher, re-ranker and indexes over the {@link Fixtures} corpus, with the inputs the benchmarks cycle
+ * through: queries, their first stage candidates, stored table documents and article texts.
+ */
+@State(Scope.Benchmark)
+public class RetrievalState {
+
+    private static final int QUERIES = 64;
+    private static final int QUERY_WORDS = 3;
+    private static final int DOCUMENTS = 256;
+
+    /**
+     * Whether the label and article mean vectors are stored at indexing time, or computed while re-ranking.
+     */
+    @Param({"false", "true"})
+    public boolean precomputedEmbeddings;
+
+    @Param({"1"})
+    public int rerankThreads;
+
+    /**
+     * Number of candidates kept by the cheap phase of the re-ranking cascade, 0 re-ranks every candidate in full.
+     */
+    @Param({"0", "50"})
+    public int cascadeCandidates;
+
+    TableStrategy tableStrategy;
+    ENWikiSearcher enWikiSearcher;
+    TableReranker tableReranker;
+    TableSearcher tableSearcher;
+    IndexSearcher indexSearcher;
+
+    String[] queries;
+    ScoreDoc[][] candidates;
+    Document[] documents;
+    String[] articles;
+
+    private Fixtures fixtures;
+    private Directory directory;
+    private DirectoryReader directoryReader;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        tableStrategy = TableStrategyFactory.createStrategy("singleField");
+        fixtures = new Fixtures(tableStrategy, precomputedEmbeddings);
+        enWikiSearcher = new ENWikiSearcher(fixtures.enWikiIndexDirectory);
+        tableReranker = new TableReranker(fixtures.wordEmbeddings, enWikiSearcher, tableStrategy, rerankThreads, null,
+                cascadeCandidates);
+        tableSearcher = new TableSearcher(fixtures.tablesIndexDirectory, tableReranker, tableStrategy);
+        directory = FSDirectory.open(fixtures.tablesIndexDirectory);
+        directoryReader = DirectoryReader.open(directory);
+        indexSearcher = new IndexSearcher(directoryReader);
+
+        queries = new String[QUERIES];
+        candidates = new ScoreDoc[QUERIES][];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = fixtures.randomQuery(QUERY_WORDS);
+            candidates[i] = indexSearcher.search(tableStrategy.parseQuery(queries[i]),
+                    TableSearcher.N_BEFORE_RERANK_DEFAULT).scoreDocs;
+        }
+        documents = new Document[Math.min(DOCUMENTS, directoryReader.maxDoc())];
+        for (int i = 0; i < documents.length; i++) {
+            documents[i] = indexSearcher.doc(i * (directoryReader.maxDoc() / documents.length));
+        }
+        articles = new String[QUERIES];
+        for (int i = 0; i < articles.length; i++) {
+            articles[i] = fixtures.randomQuery(Fixtures.WIKI_PAGE_WORDS);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        tableSearcher.close();
+        tableReranker.close();
+        enWikiSearcher.close();
+        directoryReader.close();
+        directory.close();
+        fixtures.delete();
+    }
+
+    /**
+     * @return index of the next input, cycling through the inputs so no single one is measured
+     */
+    int next() {
+        return cursor++ & 0xffff;
+    }
+}
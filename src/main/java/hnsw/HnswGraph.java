@@ -0,0 +1,98 @@
+package hnsw;
+
+import java.util.function.IntPredicate;
+
+/**
+ * Layered proximity graph of Hierarchical Navigable Small World search (Malkov and Yashunin, 2016): every node
+ * is on layer 0 and on each upper layer up to its level, the upper layers being exponentially sparser.
+ * A search descends greedily from the entry node through the upper layers and explores layer 0 best-first.
+ * <p>
+ * Nodes have at most {@code m} neighbors per upper layer and {@code 2m} on layer 0.
+ */
+abstract class HnswGraph {
+
+    final MappedVectors vectors;
+    final int m;
+
+    HnswGraph(MappedVectors vectors, int m) {
+        this.vectors = vectors;
+        this.m = m;
+    }
+
+    int maxConnections(int level) {
+        return level == 0 ? 2 * m : m;
+    }
+
+    abstract int neighborCount(int node, int level);
+
+    abstract int neighbor(int node, int level, int i);
+
+    /**
+     * @return the node of the layer most similar to the query, found greedily from the entry node
+     */
+    int greedySearch(float[] query, int entryNode, int level) {
+        var node = entryNode;
+        var similarity = vectors.similarity(node, query);
+        var improved = true;
+        while (improved) {
+            improved = false;
+            var current = node;
+            for (int i = 0, count = neighborCount(current, level); i < count; i++) {
+                var neighbor = neighbor(current, level, i);
+                var neighborSimilarity = vectors.similarity(neighbor, query);
+                if (neighborSimilarity > similarity) {
+                    node = neighbor;
+                    similarity = neighborSimilarity;
+                    improved = true;
+                }
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Best-first search of a layer.
+     *
+     * @param query   unit length query vector
+     * @param entries nodes the search starts from
+     * @param ef      number of best nodes kept while searching
+     * @param level   the layer
+     * @param visit   marks a node visited, false if it was already
+     * @return the (at most) ef nodes most similar to the query, the least similar on top
+     */
+    NeighborHeap searchLayer(float[] query, int[] entries, int entryCount, int ef, int level, IntPredicate visit) {
+        var candidates = NeighborHeap.mostSimilarOnTop(ef);
+        var results = NeighborHeap.leastSimilarOnTop(ef + 1);
+        for (int i = 0; i < entryCount; i++) {
+            if (visit.test(entries[i])) {
+                var similarity = vectors.similarity(entries[i], query);
+                candidates.push(entries[i], similarity);
+                results.push(entries[i], similarity);
+                if (results.size() > ef) {
+                    results.pop();
+                }
+            }
+        }
+        while (!candidates.isEmpty()) {
+            if (results.size() >= ef && candidates.topSimilarity() < results.topSimilarity()) {
+                break;
+            }
+            var candidate = candidates.pop();
+            for (int i = 0, count = neighborCount(candidate, level); i < count; i++) {
+                var neighbor = neighbor(candidate, level, i);
+                if (!visit.test(neighbor)) {
+                    continue;
+                }
+                var similarity = vectors.similarity(neighbor, query);
+                if (results.size() < ef || similarity > results.topSimilarity()) {
+                    candidates.push(neighbor, similarity);
+                    results.push(neighbor, similarity);
+                    if (results.size() > ef) {
+                        results.pop();
+                    }
+                }
+            }
+        }
+        return results;
+    }
+}
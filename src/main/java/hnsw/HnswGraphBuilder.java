@@ -0,0 +1,191 @@
+package hnsw;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Random;
+
+/**
+ * Builds an {@link HnswGraph} over mapped vectors by inserting the nodes one by one, the neighbors of every
+ * node on heap.
+ * <p>
+ * Neighbors are selected with the diversity heuristic of the paper: a candidate is kept only if it is more
+ * similar to the inserted node than to every neighbor kept before it, so the neighbors spread around the node
+ * instead of clustering on one side.
+ */
+final class HnswGraphBuilder extends HnswGraph {
+
+    private static final Logger logger = LogManager.getLogger(HnswGraphBuilder.class);
+
+    private static final int PROGRESS_NODES = 100_000;
+
+    private final int nodes;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final Random random;
+
+    final int[] levels;
+    final int[] layer0; // node's neighbors at node * 2m
+    final int[] layer0Counts;
+    final int[][] upper; // per level from 1: count followed by m neighbors, null for nodes of level 0
+    int entryNode = -1;
+    int maxLevel = -1;
+
+    private final int[] visitedMarks;
+    private int visitedMark;
+
+    HnswGraphBuilder(MappedVectors vectors, int nodes, int m, int efConstruction, long seed) {
+        super(vectors, m);
+        this.nodes = nodes;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.levelMultiplier = 1 / Math.log(Math.max(m, 2));
+        this.random = new Random(seed);
+        this.levels = new int[nodes];
+        this.layer0 = new int[nodes * maxConnections(0)];
+        this.layer0Counts = new int[nodes];
+        this.upper = new int[nodes][];
+        this.visitedMarks = new int[nodes];
+    }
+
+    void build() {
+        var startNanos = System.nanoTime();
+        for (int node = 0; node < nodes; node++) {
+            insert(node);
+            if ((node + 1) % PROGRESS_NODES == 0) {
+                logger.info(String.format("Inserted %d/%d nodes, %.1f nodes/sec", node + 1, nodes,
+                        (node + 1) / ((System.nanoTime() - startNanos) / 1e9)));
+            }
+        }
+    }
+
+    @Override
+    int neighborCount(int node, int level) {
+        return level == 0 ? layer0Counts[node] : upper[node][(level - 1) * (m + 1)];
+    }
+
+    @Override
+    int neighbor(int node, int level, int i) {
+        return level == 0 ? layer0[node * maxConnections(0) + i] : upper[node][(level - 1) * (m + 1) + 1 + i];
+    }
+
+    private void setNeighbors(int node, int level, int[] neighbors, int count) {
+        if (level == 0) {
+            System.arraycopy(neighbors, 0, layer0, node * maxConnections(0), count);
+            layer0Counts[node] = count;
+        } else {
+            var offset = (level - 1) * (m + 1);
+            upper[node][offset] = count;
+            System.arraycopy(neighbors, 0, upper[node], offset + 1, count);
+        }
+    }
+
+    private void insert(int node) {
+        var level = (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+        levels[node] = level;
+        if (level > 0) {
+            upper[node] = new int[level * (m + 1)];
+        }
+        if (entryNode < 0) {
+            entryNode = node;
+            maxLevel = level;
+            return;
+        }
+
+        var query = vectors.get(node, new float[vectors.dimension()]);
+        var entries = new int[]{entryNode};
+        var entryCount = 1;
+        for (int l = maxLevel; l > level; l--) {
+            entries[0] = greedySearch(query, entries[0], l);
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            visitedMark++;
+            var results = searchLayer(query, entries, entryCount, efConstruction, l, this::visit);
+            // most similar first
+            var candidates = new int[results.size()];
+            var similarities = new float[results.size()];
+            for (int i = candidates.length - 1; i >= 0; i--) {
+                similarities[i] = results.topSimilarity();
+                candidates[i] = results.pop();
+            }
+            var neighbors = new int[maxConnections(l)];
+            var count = selectNeighbors(candidates, similarities, candidates.length, neighbors);
+            setNeighbors(node, l, neighbors, count);
+            for (int i = 0; i < count; i++) {
+                connect(neighbors[i], node, l);
+            }
+            entries = candidates;
+            entryCount = candidates.length;
+        }
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryNode = node;
+        }
+    }
+
+    private boolean visit(int node) {
+        if (visitedMarks[node] == visitedMark) {
+            return false;
+        }
+        visitedMarks[node] = visitedMark;
+        return true;
+    }
+
+    /**
+     * Adds the new node to the neighbors of a node, re-selecting them if the node has too many.
+     */
+    private void connect(int node, int newNeighbor, int level) {
+        var count = neighborCount(node, level);
+        var maxConnections = maxConnections(level);
+        var candidates = new int[count + 1];
+        for (int i = 0; i < count; i++) {
+            candidates[i] = neighbor(node, level, i);
+        }
+        candidates[count] = newNeighbor;
+        if (count < maxConnections) {
+            setNeighbors(node, level, candidates, count + 1);
+            return;
+        }
+        var similarities = new float[candidates.length];
+        for (int i = 0; i < candidates.length; i++) {
+            similarities[i] = vectors.similarity(node, candidates[i]);
+        }
+        sortBySimilarity(candidates, similarities);
+        var neighbors = new int[maxConnections];
+        setNeighbors(node, level, neighbors, selectNeighbors(candidates, similarities, candidates.length, neighbors));
+    }
+
+    /**
+     * Diversity heuristic over candidates sorted from the most similar.
+     *
+     * @return number of neighbors written
+     */
+    private int selectNeighbors(int[] candidates, float[] similarities, int candidateCount, int[] neighbors) {
+        var count = 0;
+        for (int i = 0; i < candidateCount && count < neighbors.length; i++) {
+            var diverse = true;
+            for (int j = 0; j < count && diverse; j++) {
+                diverse = vectors.similarity(candidates[i], neighbors[j]) <= similarities[i];
+            }
+            if (diverse) {
+                neighbors[count++] = candidates[i];
+            }
+        }
+        return count;
+    }
+
+    private static void sortBySimilarity(int[] nodes, float[] similarities) {
+        // insertion sort, neighbor lists are short
+        for (int i = 1; i < nodes.length; i++) {
+            var node = nodes[i];
+            var similarity = similarities[i];
+            var j = i - 1;
+            while (j >= 0 && similarities[j] < similarity) {
+                nodes[j + 1] = nodes[j];
+                similarities[j + 1] = similarities[j];
+                j--;
+            }
+            nodes[j + 1] = node;
+            similarities[j + 1] = similarity;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package hnsw;
+
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.util.SparseFixedBitSet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * Approximate nearest neighbour index over unit length table embeddings, memory-mapped from the sidecar file
+ * written by {@link HnswIndexBuilder}. Search results are the Lucene docIDs of the tables, so the index is only
+ * valid for the tables index commit it was built from, see {@link #getIndexVersion()}.
+ * <p>
+ * The file holds, all values little-endian:
+ * <pre>
+ * header:         int magic, int version, int nodes, int dimension, int m, int max level, int entry node,
+ *                 long reader version, int length and UTF-8 bytes of the index version, padded to 4 bytes
+ * vectors:        nodes x dimension float32, unit length
+ * docIDs:         int per node
+ * layer 0:        per node int neighbor count followed by 2m int neighbors
+ * upper offsets:  int per node, offset of its upper layers in the upper section, -1 for nodes of level 0
+ * upper layers:   per node and level from 1, int neighbor count followed by m int neighbors
+ * </pre>
+ * Instances are safe to share between concurrent searches.
+ */
+public class HnswIndex extends HnswGraph {
+
+    static final int MAGIC = 0x57534e48; // "HNSW"
+    static final int VERSION = 1;
+    static final int FIXED_HEADER_BYTES = 7 * Integer.BYTES + Long.BYTES + Integer.BYTES;
+
+    private final int nodes;
+    private final int maxLevel;
+    private final int entryNode;
+    private final long readerVersion;
+    private final String indexVersion;
+    private final IntBuffer docIDs;
+    private final IntBuffer layer0;
+    private final IntBuffer upperOffsets;
+    private final IntBuffer upper;
+
+    private HnswIndex(MappedVectors vectors, int m, int nodes, int maxLevel, int entryNode, long readerVersion,
+                      String indexVersion, IntBuffer docIDs, IntBuffer layer0, IntBuffer upperOffsets, IntBuffer upper) {
+        super(vectors, m);
+        this.nodes = nodes;
+        this.maxLevel = maxLevel;
+        this.entryNode = entryNode;
+        this.readerVersion = readerVersion;
+        this.indexVersion = indexVersion;
+        this.docIDs = docIDs;
+        this.layer0 = layer0;
+        this.upperOffsets = upperOffsets;
+        this.upper = upper;
+    }
+
+    /**
+     * Maps the sidecar file.
+     *
+     * @param file sidecar file
+     * @return opened index
+     * @throws IOException if an I/O error occurs mapping the file or it is not an index file
+     */
+    public static HnswIndex open(Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var header = ByteBuffer.allocate(FIXED_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(header, 0);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new IOException(file + " is not an HNSW index file of version " + VERSION);
+            }
+            var nodes = header.getInt(8);
+            var dimension = header.getInt(12);
+            var m = header.getInt(16);
+            var maxLevel = header.getInt(20);
+            var entryNode = header.getInt(24);
+            var readerVersion = header.getLong(28);
+            var indexVersion = ByteBuffer.allocate(header.getInt(36));
+            channel.read(indexVersion, FIXED_HEADER_BYTES);
+
+            var vectorsStart = headerBytes(indexVersion.capacity());
+            var docIDsStart = vectorsStart + MappedVectors.bytes(nodes, dimension);
+            var layer0Start = docIDsStart + (long) nodes * Integer.BYTES;
+            var upperOffsetsStart = layer0Start + (long) nodes * (1 + 2 * m) * Integer.BYTES;
+            var upperStart = upperOffsetsStart + (long) nodes * Integer.BYTES;
+            if (channel.size() < upperStart) {
+                throw new IOException(file + " is truncated");
+            }
+            return new HnswIndex(MappedVectors.map(channel, vectorsStart, nodes, dimension), m, nodes, maxLevel,
+                    entryNode, readerVersion, new String(indexVersion.array(), StandardCharsets.UTF_8),
+                    mapInts(channel, docIDsStart, layer0Start),
+                    mapInts(channel, layer0Start, upperOffsetsStart),
+                    mapInts(channel, upperOffsetsStart, upperStart),
+                    mapInts(channel, upperStart, channel.size()));
+        }
+    }
+
+    static long headerBytes(int indexVersionBytes) {
+        return (FIXED_HEADER_BYTES + indexVersionBytes + 3) / 4 * 4;
+    }
+
+    private static IntBuffer mapInts(FileChannel channel, long start, long end) throws IOException {
+        if (end - start > Integer.MAX_VALUE) {
+            throw new IOException("HNSW graph section of " + (end - start) + " bytes is too large to be mapped");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, start, end - start)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .asIntBuffer();
+    }
+
+    /**
+     * @return number of indexed tables
+     */
+    public int size() {
+        return nodes;
+    }
+
+    /**
+     * @return version of the tables index the graph was built from, see {@link utils.LuceneTools#indexVersion(Path)}
+     */
+    public String getIndexVersion() {
+        return indexVersion;
+    }
+
+    /**
+     * @return {@link org.apache.lucene.index.DirectoryReader#getVersion()} of the tables index the graph was built
+     * from, the docIDs are only valid for readers of this version
+     */
+    public long getReaderVersion() {
+        return readerVersion;
+    }
+
+    @Override
+    int neighborCount(int node, int level) {
+        return level == 0 ? layer0.get(node * (1 + 2 * m)) : upper.get(upperOffsets.get(node) + (level - 1) * (m + 1));
+    }
+
+    @Override
+    int neighbor(int node, int level, int i) {
+        return level == 0
+                ? layer0.get(node * (1 + 2 * m) + 1 + i)
+                : upper.get(upperOffsets.get(node) + (level - 1) * (m + 1) + 1 + i);
+    }
+
+    /**
+     * Approximate nearest tables of the query.
+     *
+     * @param unitQuery unit length query vector
+     * @param k         number of tables
+     * @param ef        number of candidates kept while searching layer 0, higher is slower with better recall
+     * @return score docs of the nearest tables with their cosine similarity, most similar first
+     */
+    public ScoreDoc[] search(float[] unitQuery, int k, int ef) {
+        var nearest = searchNodes(unitQuery, k, ef);
+        var scoreDocs = new ScoreDoc[nearest.size()];
+        for (int i = scoreDocs.length - 1; i >= 0; i--) {
+            var similarity = nearest.topSimilarity();
+            scoreDocs[i] = new ScoreDoc(docIDs.get(nearest.pop()), similarity);
+        }
+        return scoreDocs;
+    }
+
+    private NeighborHeap searchNodes(float[] unitQuery, int k, int ef) {
+        if (nodes == 0 || k <= 0) {
+            return NeighborHeap.leastSimilarOnTop(1);
+        }
+        var entry = entryNode;
+        for (int level = maxLevel; level > 0; level--) {
+            entry = greedySearch(unitQuery, entry, level);
+        }
+        var visited = new SparseFixedBitSet(nodes);
+        var results = searchLayer(unitQuery, new int[]{entry}, 1, Math.max(ef, k), 0, node -> {
+            if (visited.get(node)) {
+                return false;
+            }
+            visited.set(node);
+            return true;
+        });
+        while (results.size() > k) {
+            results.pop();
+        }
+        return results;
+    }
+
+    /**
+     * Estimates the recall of {@link #search(float[], int, int)} by searching the vectors of sampled tables and
+     * comparing the results with an exact scan.
+     *
+     * @param k       number of tables searched
+     * @param ef      search parameter, see {@link #search(float[], int, int)}
+     * @param samples number of sampled tables
+     * @return fraction of the exact k nearest tables found
+     */
+    public double estimateRecall(int k, int ef, int samples) {
+        if (nodes == 0) {
+            return 1;
+        }
+        var random = new Random(0);
+        var query = new float[vectors.dimension()];
+        var found = 0L;
+        var expected = 0L;
+        for (int sample = 0; sample < samples; sample++) {
+            vectors.get(random.nextInt(nodes), query);
+            var exact = NeighborHeap.leastSimilarOnTop(k + 1);
+            for (int node = 0; node < nodes; node++) {
+                exact.push(node, vectors.similarity(node, query));
+                if (exact.size() > k) {
+                    exact.pop();
+                }
+            }
+            var approximate = new SparseFixedBitSet(nodes);
+            var nearest = searchNodes(query, k, ef);
+            while (!nearest.isEmpty()) {
+                approximate.set(nearest.pop());
+            }
+            expected += exact.size();
+            while (!exact.isEmpty()) {
+                if (approximate.get(exact.pop())) {
+                    found++;
+                }
+            }
+        }
+        return (double) found / expected;
+    }
+}
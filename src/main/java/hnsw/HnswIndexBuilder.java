@@ -0,0 +1,223 @@
+package hnsw;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.IntsRefBuilder;
+import org.apache.lucene.util.StringHelper;
+import strategy.table.LabelTermsCodec;
+import strategy.table.TableStrategy;
+import utils.Consts;
+import word_embedding.VectorCodec;
+import word_embedding.VectorMath;
+import word_embedding.WordEmbeddings;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import static hnsw.HnswIndex.*;
+
+/**
+ * Builds the {@link HnswIndex} sidecar of a tables index over the mean word vector of every table's labels,
+ * the embedding the re-ranker compares the query with.
+ * <p>
+ * The vectors are read from the labels embedding or label term doc values when the index has them, otherwise
+ * from the stored labels, and streamed to the file before the graph is built over their mapping, so only the
+ * graph is held on the heap. Tables without a known label word are left out. The file is written next to its
+ * destination and moved into place once complete.
+ */
+public class HnswIndexBuilder {
+
+    public static final int M_DEFAULT = 16;
+    public static final int EF_CONSTRUCTION_DEFAULT = 100;
+
+    private static final Logger logger = LogManager.getLogger(HnswIndexBuilder.class);
+
+    private static final long SEED = 42;
+    private static final int WRITE_BUFFER_BYTES = 1 << 16;
+
+    private final WordEmbeddings wordEmbeddings;
+    private final TableStrategy tableStrategy;
+    private final int m;
+    private final int efConstruction;
+
+    /**
+     * Builder constructor.
+     *
+     * @param wordEmbeddings word embedding model
+     * @param tableStrategy  how the tables were indexed
+     * @param m              neighbors per node and upper layer, twice as many on layer 0
+     * @param efConstruction number of candidate neighbors searched per inserted node
+     */
+    public HnswIndexBuilder(WordEmbeddings wordEmbeddings, TableStrategy tableStrategy, int m, int efConstruction) {
+        this.wordEmbeddings = wordEmbeddings;
+        this.tableStrategy = tableStrategy;
+        this.m = Math.max(2, m);
+        this.efConstruction = efConstruction;
+    }
+
+    /**
+     * Builds the sidecar of the latest commit of the tables index.
+     *
+     * @param tablesIndexDirectory location of the tables index directory
+     * @param hnswFile             location of the sidecar file, replaced if it exists
+     * @throws IOException if an I/O error occurs reading the index or writing the file
+     */
+    public void build(Path tablesIndexDirectory, Path hnswFile) throws IOException {
+        var startNanos = System.nanoTime();
+        var tmpFile = Paths.get(hnswFile + ".tmp");
+        if (hnswFile.getParent() != null) {
+            Files.createDirectories(hnswFile.getParent());
+        }
+        try (var directory = FSDirectory.open(tablesIndexDirectory);
+             var reader = DirectoryReader.open(directory);
+             var channel = FileChannel.open(tmpFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                     StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            var segmentInfos = SegmentInfos.readLatestCommit(directory);
+            var indexVersion = (StringHelper.idToString(segmentInfos.getId()) + "-" + segmentInfos.getVersion())
+                    .getBytes(StandardCharsets.UTF_8);
+            var vectorsStart = headerBytes(indexVersion.length);
+            var dimension = wordEmbeddings.dimension();
+
+            var output = new Output(channel, vectorsStart);
+            var docIDs = writeVectors(reader, output);
+            output.flush();
+            var nodes = docIDs.length();
+            logger.info("Embedded " + nodes + " of " + reader.numDocs() + " tables, building the graph...");
+
+            var graph = new HnswGraphBuilder(MappedVectors.map(channel, vectorsStart, nodes, dimension), nodes, m,
+                    efConstruction, SEED);
+            graph.build();
+
+            for (int node = 0; node < nodes; node++) {
+                output.putInt(docIDs.intAt(node));
+            }
+            for (int node = 0; node < nodes; node++) {
+                output.putInt(graph.neighborCount(node, 0));
+                for (int i = 0; i < 2 * m; i++) {
+                    output.putInt(i < graph.neighborCount(node, 0) ? graph.neighbor(node, 0, i) : -1);
+                }
+            }
+            var upperOffset = 0;
+            for (int node = 0; node < nodes; node++) {
+                output.putInt(graph.upper[node] == null ? -1 : upperOffset);
+                upperOffset += graph.upper[node] == null ? 0 : graph.upper[node].length;
+            }
+            for (int node = 0; node < nodes; node++) {
+                if (graph.upper[node] != null) {
+                    for (var value : graph.upper[node]) {
+                        output.putInt(value);
+                    }
+                }
+            }
+            output.flush();
+
+            var header = ByteBuffer.allocate((int) vectorsStart).order(ByteOrder.LITTLE_ENDIAN)
+                    .putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putInt(nodes)
+                    .putInt(dimension)
+                    .putInt(m)
+                    .putInt(graph.maxLevel)
+                    .putInt(graph.entryNode)
+                    .putLong(reader.getVersion())
+                    .putInt(indexVersion.length)
+                    .put(indexVersion);
+            channel.write(header.clear(), 0);
+            logger.info(String.format("Built HNSW graph of %d tables, %d levels, in %.1fs", nodes, graph.maxLevel + 1,
+                    (System.nanoTime() - startNanos) / 1e9));
+        }
+        Files.move(tmpFile, hnswFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes the unit length labels embedding of every live table that has one.
+     *
+     * @return docIDs of the written vectors
+     */
+    private IntsRefBuilder writeVectors(DirectoryReader reader, Output output) throws IOException {
+        var docIDs = new IntsRefBuilder();
+        var ids = new IntsRefBuilder();
+        var mean = new float[wordEmbeddings.dimension()];
+        var labelFields = tableStrategy.getLabelFields();
+        for (var leaf : reader.leaves()) {
+            var leafReader = leaf.reader();
+            Bits liveDocs = leafReader.getLiveDocs();
+            var labelsEmbeddings = leafReader.getBinaryDocValues(Consts.LABELS_EMBEDDING);
+            for (int doc = 0; doc < leafReader.maxDoc(); doc++) {
+                if (liveDocs != null && !liveDocs.get(doc)) {
+                    continue;
+                }
+                var docID = leaf.docBase + doc;
+                float[] vector;
+                if (labelsEmbeddings != null && labelsEmbeddings.advanceExact(doc)) {
+                    vector = VectorCodec.decode(labelsEmbeddings.binaryValue(), mean);
+                } else {
+                    var labelIds = LabelTermsCodec.readIds(reader, docID, wordEmbeddings, ids);
+                    if (labelIds == null) {
+                        labelIds = tableStrategy.getDocumentLabelIds(leafReader.document(doc, labelFields),
+                                wordEmbeddings, ids);
+                    }
+                    vector = wordEmbeddings.getWordVectorsMean(labelIds, mean) ? mean : null;
+                }
+                vector = vector == null ? null : VectorMath.normalize(vector);
+                if (vector == null) {
+                    continue;
+                }
+                for (var value : vector) {
+                    output.putFloat(value);
+                }
+                docIDs.append(docID);
+            }
+        }
+        return docIDs;
+    }
+
+    /**
+     * Buffered little-endian writer at a position of the channel.
+     */
+    private static final class Output {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        private long position;
+
+        Output(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        void putInt(int value) throws IOException {
+            if (buffer.remaining() < Integer.BYTES) {
+                flush();
+            }
+            buffer.putInt(value);
+        }
+
+        void putFloat(float value) throws IOException {
+            if (buffer.remaining() < Float.BYTES) {
+                flush();
+            }
+            buffer.putFloat(value);
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package hnsw;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Unit length float32 vectors mapped from a file region, row per node. A single mapping is limited to 2GB,
+ * the rows are mapped in chunks of whole rows.
+ */
+final class MappedVectors {
+
+    private final int dimension;
+    private final int rowsPerChunk;
+    private final FloatBuffer[] chunks;
+
+    private MappedVectors(int dimension, int rowsPerChunk, FloatBuffer[] chunks) {
+        this.dimension = dimension;
+        this.rowsPerChunk = rowsPerChunk;
+        this.chunks = chunks;
+    }
+
+    static MappedVectors map(FileChannel channel, long offset, int rows, int dimension) throws IOException {
+        long rowBytes = (long) dimension * Float.BYTES;
+        var rowsPerChunk = (int) Math.min(Math.max(rows, 1), Integer.MAX_VALUE / Math.max(rowBytes, 1));
+        var chunks = new FloatBuffer[(rows + rowsPerChunk - 1) / rowsPerChunk];
+        for (int i = 0; i < chunks.length; i++) {
+            var firstRow = (long) i * rowsPerChunk;
+            var chunkRows = Math.min(rowsPerChunk, rows - firstRow);
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset + firstRow * rowBytes, chunkRows * rowBytes)
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .asFloatBuffer();
+        }
+        return new MappedVectors(dimension, rowsPerChunk, chunks);
+    }
+
+    static long bytes(int rows, int dimension) {
+        return (long) rows * dimension * Float.BYTES;
+    }
+
+    int dimension() {
+        return dimension;
+    }
+
+    /**
+     * @return cosine similarity of the row to the unit length vector
+     */
+    float similarity(int row, float[] unit) {
+        var chunk = chunks[row / rowsPerChunk];
+        var start = (row % rowsPerChunk) * dimension;
+        var dot = 0f;
+        for (int i = 0; i < dimension; i++) {
+            dot += chunk.get(start + i) * unit[i];
+        }
+        return dot;
+    }
+
+    /**
+     * @return cosine similarity of two rows
+     */
+    float similarity(int row1, int row2) {
+        var chunk1 = chunks[row1 / rowsPerChunk];
+        var start1 = (row1 % rowsPerChunk) * dimension;
+        var chunk2 = chunks[row2 / rowsPerChunk];
+        var start2 = (row2 % rowsPerChunk) * dimension;
+        var dot = 0f;
+        for (int i = 0; i < dimension; i++) {
+            dot += chunk1.get(start1 + i) * chunk2.get(start2 + i);
+        }
+        return dot;
+    }
+
+    float[] get(int row, float[] vector) {
+        var chunk = chunks[row / rowsPerChunk];
+        var start = (row % rowsPerChunk) * dimension;
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = chunk.get(start + i);
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,117 @@
+package hnsw;
+
+import java.util.Arrays;
+
+/**
+ * Binary heap of (node, similarity) pairs on primitive arrays, with either the least or the most similar node
+ * on top. Equally similar nodes are ordered by node, so searches are deterministic.
+ */
+final class NeighborHeap {
+
+    private final boolean leastSimilarOnTop;
+    private int[] nodes;
+    private float[] similarities;
+    private int size;
+
+    private NeighborHeap(int capacity, boolean leastSimilarOnTop) {
+        this.leastSimilarOnTop = leastSimilarOnTop;
+        this.nodes = new int[Math.max(1, capacity)];
+        this.similarities = new float[nodes.length];
+    }
+
+    /**
+     * @return heap with the least similar node on top, to keep the best results
+     */
+    static NeighborHeap leastSimilarOnTop(int capacity) {
+        return new NeighborHeap(capacity, true);
+    }
+
+    /**
+     * @return heap with the most similar node on top, to expand the best candidates first
+     */
+    static NeighborHeap mostSimilarOnTop(int capacity) {
+        return new NeighborHeap(capacity, false);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void push(int node, float similarity) {
+        if (size == nodes.length) {
+            nodes = Arrays.copyOf(nodes, size * 2);
+            similarities = Arrays.copyOf(similarities, size * 2);
+        }
+        nodes[size] = node;
+        similarities[size] = similarity;
+        siftUp(size++);
+    }
+
+    int topNode() {
+        return nodes[0];
+    }
+
+    float topSimilarity() {
+        return similarities[0];
+    }
+
+    /**
+     * @return the node removed from the top
+     */
+    int pop() {
+        var top = nodes[0];
+        size--;
+        nodes[0] = nodes[size];
+        similarities[0] = similarities[size];
+        siftDown(0);
+        return top;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            var parent = (i - 1) >>> 1;
+            if (!above(i, parent)) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            var child = 2 * i + 1;
+            if (child >= size) {
+                return;
+            }
+            if (child + 1 < size && above(child + 1, child)) {
+                child++;
+            }
+            if (!above(child, i)) {
+                return;
+            }
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    private boolean above(int i, int j) {
+        if (similarities[i] != similarities[j]) {
+            return leastSimilarOnTop ? similarities[i] < similarities[j] : similarities[i] > similarities[j];
+        }
+        return leastSimilarOnTop ? nodes[i] > nodes[j] : nodes[i] < nodes[j];
+    }
+
+    private void swap(int i, int j) {
+        var node = nodes[i];
+        nodes[i] = nodes[j];
+        nodes[j] = node;
+        var similarity = similarities[i];
+        similarities[i] = similarities[j];
+        similarities[j] = similarity;
+    }
+}
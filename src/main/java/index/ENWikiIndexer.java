@@ -1,6 +1,9 @@
 package index;
 
+import edu.jhu.nlp.wikipedia.WikiPage;
 import edu.jhu.nlp.wikipedia.WikiXMLParserFactory;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
@@ -11,14 +14,36 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * ENWiki Indexer class.
+ * <p>
+ * The SAX parser thread only enqueues pages into a bounded queue, blocking while it is full, and a pool of
+ * index threads filters the pages, populates the documents and adds them to the shared writer.
+ * A page that fails is logged and counted, and the index threads keep draining the queue even after an error,
+ * so the parser never blocks on a queue nobody takes from. An error aborts the parsing and fails the indexing.
  */
 public class ENWikiIndexer implements Closeable {
 
+    public static final int INDEX_THREADS_DEFAULT = 1;
+    public static final int QUEUE_CAPACITY_DEFAULT = 1024;
+
+    private static final Logger logger = LogManager.getLogger(ENWikiIndexer.class);
+
+    // marks the end of the dump for the index threads
+    private static final WikiPage END_OF_DUMP = new WikiPage();
+
     private final IndexWriter writer;
     private final ENWikiIndexStrategy enWikiIndexStrategy;
+    private final int indexThreads;
+    private final int queueCapacity;
 
     /**
      * Indexer constructor.
@@ -29,10 +54,27 @@ public class ENWikiIndexer implements Closeable {
      *                     unmappable byte sequence is read
      */
     public ENWikiIndexer(ENWikiIndexStrategy enWikiIndexStrategy, Path enWikiIndexDirectory) throws IOException {
+        this(enWikiIndexStrategy, enWikiIndexDirectory, INDEX_THREADS_DEFAULT, QUEUE_CAPACITY_DEFAULT);
+    }
+
+    /**
+     * Indexer constructor for parallel indexing.
+     *
+     * @param enWikiIndexStrategy  how to index the EN Wiki dump
+     * @param enWikiIndexDirectory location for the index directory
+     * @param indexThreads         number of threads building and adding documents
+     * @param queueCapacity        number of parsed pages waiting for the index threads
+     * @throws IOException if an I/O error occurs reading from the file or a malformed or
+     *                     unmappable byte sequence is read
+     */
+    public ENWikiIndexer(ENWikiIndexStrategy enWikiIndexStrategy, Path enWikiIndexDirectory,
+                         int indexThreads, int queueCapacity) throws IOException {
         var dir = FSDirectory.open(enWikiIndexDirectory);
         var writerConfig = new IndexWriterConfig(new ENWikiAnalyzerBuilder().build());
         this.writer = new IndexWriter(dir, writerConfig);
         this.enWikiIndexStrategy = enWikiIndexStrategy;
+        this.indexThreads = Math.max(1, indexThreads);
+        this.queueCapacity = Math.max(1, queueCapacity);
     }
 
     /**
@@ -52,30 +94,137 @@ public class ENWikiIndexer implements Closeable {
      */
     public void index(Path dumpFilePath) throws IOException {
         Objects.requireNonNull(dumpFilePath);
+        var queue = new ArrayBlockingQueue<WikiPage>(queueCapacity);
+        var counters = new Counters();
+        var executor = Executors.newFixedThreadPool(indexThreads);
+        for (int i = 0; i < indexThreads; i++) {
+            executor.execute(() -> indexPages(queue, counters));
+        }
         try {
             var wxsp = WikiXMLParserFactory.getSAXParser(dumpFilePath.toAbsolutePath().toString());
             wxsp.setPageCallback(page -> {
-                var document = new Document();
-                // index page if none of listed is true
-                var title = page.getTitle();
-                if (!page.isCategoryPage()
-                        && !page.isDisambiguationPage()
-                        && !page.isRedirect()
-                        && !page.isSpecialPage()
-                        && !page.isStub()
-                        && !title.startsWith("Wikipedia:")
-                        && !title.startsWith("File:")) {
-                    try {
-                        writer.addDocument(enWikiIndexStrategy.populateDocument(document, page));
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
+                if (counters.error.get() != null) {
+                    throw new IllegalStateException("Indexing " + dumpFilePath + " aborted", counters.error.get());
+                }
+                try {
+                    queue.put(page);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while parsing " + dumpFilePath, e);
                 }
             });
             wxsp.parse();
 
         } catch (Exception jsonException) {
             jsonException.printStackTrace();
+        } finally {
+            finish(queue, executor);
+        }
+        logger.info(String.format("Indexed %d pages, skipped %d pages, failed %d pages",
+                counters.indexed.get(), counters.skipped.get(), counters.failed.get()));
+        if (counters.error.get() != null) {
+            throw new IOException("Indexing " + dumpFilePath + " aborted", counters.error.get());
+        }
+    }
+
+    /**
+     * Index thread loop, indexes pages until the end of the dump is reached. After an error the remaining pages
+     * are only taken off the queue.
+     */
+    private void indexPages(BlockingQueue<WikiPage> queue, Counters counters) {
+        try {
+            WikiPage page;
+            while ((page = queue.take()) != END_OF_DUMP) {
+                if (counters.error.get() != null) {
+                    continue;
+                }
+                try {
+                    // index page if none of listed is true
+                    if (isIndexed(page)) {
+                        writer.addDocument(enWikiIndexStrategy.populateDocument(new Document(), page));
+                        counters.indexed();
+                    } else {
+                        counters.skipped.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    logger.error("Failed indexing page " + title(page), e);
+                    counters.failed.incrementAndGet();
+                } catch (Throwable t) {
+                    logger.error("Aborted indexing at page " + title(page), t);
+                    counters.failed.incrementAndGet();
+                    counters.error(t);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String title(WikiPage page) {
+        try {
+            return page.getTitle();
+        } catch (RuntimeException e) {
+            return "<unreadable title>";
+        }
+    }
+
+    private static boolean isIndexed(WikiPage page) {
+        var title = page.getTitle();
+        return !page.isCategoryPage()
+                && !page.isDisambiguationPage()
+                && !page.isRedirect()
+                && !page.isSpecialPage()
+                && !page.isStub()
+                && !title.startsWith("Wikipedia:")
+                && !title.startsWith("File:");
+    }
+
+    /**
+     * Lets every index thread drain the queue and stop, waiting for all of them.
+     */
+    private void finish(BlockingQueue<WikiPage> queue, ExecutorService executor) throws IOException {
+        try {
+            for (int i = 0; i < indexThreads; i++) {
+                queue.put(END_OF_DUMP);
+            }
+            executor.shutdown();
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                logger.info("Waiting for " + queue.size() + " queued pages to be indexed...");
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while indexing", e);
+        }
+    }
+
+    /**
+     * Page counters shared by the index threads.
+     */
+    private static class Counters {
+
+        private static final int LOG_EVERY = 10_000;
+
+        private final AtomicLong indexed = new AtomicLong();
+        private final AtomicLong skipped = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        // first error of an index thread, stops the parsing
+        private final AtomicReference<Throwable> error = new AtomicReference<>();
+
+        void indexed() {
+            var count = indexed.incrementAndGet();
+            if (count % LOG_EVERY == 0) {
+                logger.info(String.format("Indexed %d pages, skipped %d pages", count, skipped.get()));
+            }
+        }
+
+        /**
+         * Records an error of an index thread, errors after the first are suppressed by it.
+         */
+        void error(Throwable t) {
+            if (!error.compareAndSet(null, t) && error.get() != t) {
+                error.get().addSuppressed(t);
+            }
         }
     }
 
@@ -1,27 +1,47 @@
 package index;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.lucene.document.BinaryDocValuesField;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.IntsRefBuilder;
 import org.json.JSONException;
 import org.json.JSONObject;
 import strategy.table.TableStrategy;
 import utils.Consts;
+import word_embedding.VectorCodec;
+import word_embedding.WordEmbeddings;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 public class TableIndexer implements Closeable {
 
+    public static final int INDEX_THREADS_DEFAULT = 1;
+
+    private static final Logger logger = LogManager.getLogger(TableIndexer.class);
+
     private final IndexWriter writer;
     private final TableStrategy tableStrategy;
+    private final WordEmbeddings wordEmbeddings;
+    private final int indexThreads;
 
     /**
      * Indexer constructor.
@@ -32,10 +52,42 @@ public class TableIndexer implements Closeable {
      *                     unmappable byte sequence is read
      */
     public TableIndexer(TableStrategy tableStrategy, Path indexDirectory) throws IOException {
+        this(tableStrategy, indexDirectory, null);
+    }
+
+    /**
+     * Indexer constructor, which additionally stores the mean word vector of every table's labels.
+     *
+     * @param tableStrategy  how to index the tables
+     * @param indexDirectory location for the index directory
+     * @param wordEmbeddings model used for the labels embedding, or null to skip the embedding
+     * @throws IOException if an I/O error occurs reading from the file or a malformed or
+     *                     unmappable byte sequence is read
+     */
+    public TableIndexer(TableStrategy tableStrategy, Path indexDirectory, WordEmbeddings wordEmbeddings) throws IOException {
+        this(tableStrategy, indexDirectory, wordEmbeddings, INDEX_THREADS_DEFAULT, IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB);
+    }
+
+    /**
+     * Indexer constructor for parallel indexing, files are parsed and added to the shared writer concurrently.
+     *
+     * @param tableStrategy   how to index the tables
+     * @param indexDirectory  location for the index directory
+     * @param wordEmbeddings  model used for the labels embedding, or null to skip the embedding
+     * @param indexThreads    number of files indexed concurrently
+     * @param ramBufferSizeMB RAM the writer buffers before flushing a segment
+     * @throws IOException if an I/O error occurs reading from the file or a malformed or
+     *                     unmappable byte sequence is read
+     */
+    public TableIndexer(TableStrategy tableStrategy, Path indexDirectory, WordEmbeddings wordEmbeddings,
+                        int indexThreads, double ramBufferSizeMB) throws IOException {
         var dir = FSDirectory.open(indexDirectory);
-        var writerConfig = new IndexWriterConfig(new TableAnalyzerBuilder().build());
+        var writerConfig = new IndexWriterConfig(new TableAnalyzerBuilder().build())
+                .setRAMBufferSizeMB(ramBufferSizeMB);
         this.writer = new IndexWriter(dir, writerConfig);
         this.tableStrategy = tableStrategy;
+        this.wordEmbeddings = wordEmbeddings;
+        this.indexThreads = Math.max(1, indexThreads);
     }
 
     /**
@@ -50,82 +102,158 @@ public class TableIndexer implements Closeable {
 
     /**
      * Builds/updates the index, reading the files in the directory.
+     * Files are indexed by a pool of index threads sharing the writer.
      *
      * @param directoryPath where the contents for indexing reside
      */
     public void index(Path directoryPath) throws IOException {
         Objects.requireNonNull(directoryPath);
-        for (Path filePath : Files.list(directoryPath).collect(Collectors.toList())) {
-            System.out.println("Indexing " + filePath.toAbsolutePath().toString());
-            indexFile(filePath);
+        List<Path> filePaths;
+        try (var files = Files.list(directoryPath)) {
+            filePaths = files.collect(Collectors.toList());
+        }
+        var progress = new Progress(filePaths.size());
+        var executor = Executors.newFixedThreadPool(indexThreads);
+        var futures = new ArrayList<Future<?>>(filePaths.size());
+        try {
+            for (Path filePath : filePaths) {
+                futures.add(executor.submit(() -> {
+                    logger.info("Indexing " + filePath.toAbsolutePath().toString());
+                    try {
+                        progress.fileIndexed(indexFile(filePath));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }));
+            }
+            for (var future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while indexing " + directoryPath, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            // running files are left to finish, an interrupt inside the writer would close it
+            futures.forEach(future -> future.cancel(false));
+            executor.shutdown();
+            awaitTermination(executor);
+        }
+        logger.info(String.format("Indexed %d tables from %d files in %.1fs", progress.documents.get(),
+                filePaths.size(), progress.elapsedSeconds()));
+    }
+
+    /**
+     * Waits for the index threads to finish their files, the interrupt status is kept if interrupted meanwhile.
+     */
+    private static void awaitTermination(ExecutorService executor) {
+        var interrupted = false;
+        while (true) {
+            try {
+                if (executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    break;
+                }
+                logger.info("Waiting for the index threads to finish their files...");
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
         }
     }
 
     /**
      * Indexes a single file containing multiple tables.
+     * Tables are streamed from the file and added to the writer one at a time.
      *
      * @param filePath of JSON file containing tables
+     * @return number of indexed tables
      * @throws IOException if an I/O error occurs reading from the file or a malformed or
      *                     unmappable byte sequence is read
      */
-    private void indexFile(Path filePath) throws IOException {
+    private int indexFile(Path filePath) throws IOException {
         Objects.requireNonNull(filePath);
-        try {
-            var documents = getDocuments(filePath);
-            writer.addDocuments(documents.values());
+        var indexed = new AtomicInteger();
+        try (var tablesJsonReader = new TablesJsonReader(filePath)) {
+            tablesJsonReader.forEachTable((tableName, tableJsonObject) -> {
+                try {
+                    writer.addDocument(fromTableJsonObject(tableName, tableJsonObject));
+                    indexed.incrementAndGet();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         } catch (JSONException jsonException) {
-            jsonException.printStackTrace();
+            logger.error("Malformed tables file " + filePath + ", indexed " + indexed.get() + " tables before the error",
+                    jsonException);
         }
+        return indexed.get();
     }
 
     /**
-     * Creates and returns Documents from provided JSON file.
+     * Creates a {@link Document} from a table.
+     * Documents are populated according to the table strategy.
      *
-     * @param filePath of JSON file containing tables
-     * @return map of created Documents
-     * @throws IOException if an I/O error occurs reading from the file or a malformed or
-     *                     unmappable byte sequence is read
+     * @param tableName       name of the table (e.g "table-0001-590")
+     * @param tableJsonObject {@link JSONObject} of the table
+     * @return created Document
      */
-    private Map<String, Document> getDocuments(Path filePath) throws IOException, JSONException {
-        Objects.requireNonNull(filePath);
-        // read file
-        // transform json to file
-        var tablesJsonObject = new JSONObject(Files.readString(filePath));
-        return fromTablesJsonObject(tablesJsonObject);
+    Document fromTableJsonObject(String tableName, JSONObject tableJsonObject) {
+        var document = new Document();
+        document.add(new TextField(Consts.TABLE_NAME, tableName, Field.Store.YES));
+        var pgTitle = tableJsonObject.getString("pgTitle");
+        document.add(new TextField(Consts.PAGE_TITLE, pgTitle, Field.Store.YES));
+        tableStrategy.populateDocument(tableJsonObject, document);
+        if (wordEmbeddings != null) {
+            addLabelsEmbedding(document);
+        }
+        return document;
     }
 
     /**
-     * Returns a {@link Map} where table name is the key (e.g "table-0001-590") and {@link Document} is the value.
-     * Documents are created and populated according to Single-Field strategy.
+     * Stores the mean word vector of the document labels, as the re-ranker would compute it at query time.
      *
-     * @param tablesJsonObject {@link JSONObject} containing tables
-     * @return Map of tables
+     * @param document populated table {@link Document}
      */
-    Map<String, Document> fromTablesJsonObject(JSONObject tablesJsonObject) {
+    private void addLabelsEmbedding(Document document) {
+        var ids = tableStrategy.getDocumentLabelIds(document, wordEmbeddings, new IntsRefBuilder());
+        var mean = new float[wordEmbeddings.dimension()];
+        if (!wordEmbeddings.getWordVectorsMean(ids, mean)) {
+            return;
+        }
+        document.add(new BinaryDocValuesField(Consts.LABELS_EMBEDDING, VectorCodec.encode(mean)));
+    }
 
-        HashMap<String, Document> documentHashMap = new HashMap<>();
+    /**
+     * Indexing progress shared by the index threads.
+     */
+    private static class Progress {
 
-        for (String key : tablesKeys(tablesJsonObject)) {
-            var document = new Document();
-            document.add(new TextField(Consts.TABLE_NAME, key, Field.Store.YES));
-            var tableJsonObject = tablesJsonObject.getJSONObject(key);
-            var pgTitle = tableJsonObject.getString("pgTitle");
-            document.add(new TextField(Consts.PAGE_TITLE, pgTitle, Field.Store.YES));
-            tableStrategy.populateDocument(tableJsonObject, document);
+        private final int files;
+        private final long startNanos = System.nanoTime();
+        private final AtomicInteger filesIndexed = new AtomicInteger();
+        private final AtomicLong documents = new AtomicLong();
 
-            documentHashMap.put(key, document);
+        Progress(int files) {
+            this.files = files;
         }
 
-        return documentHashMap;
-    }
+        void fileIndexed(int fileDocuments) {
+            var indexed = filesIndexed.incrementAndGet();
+            var total = documents.addAndGet(fileDocuments);
+            logger.info(String.format("Indexed file %d/%d, %d tables, %.1f tables/sec",
+                    indexed, files, total, total / elapsedSeconds()));
+        }
 
-    /**
-     * Keys getter convenience method.
-     *
-     * @param tablesJsonObject {@link JSONObject} containing tables
-     * @return Set of keys
-     */
-    private Set<String> tablesKeys(JSONObject tablesJsonObject) {
-        return Collections.unmodifiableSet(tablesJsonObject.keySet());
+        double elapsedSeconds() {
+            return (System.nanoTime() - startNanos) / 1e9;
+        }
     }
 }
@@ -0,0 +1,76 @@
+package index;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.BiConsumer;
+
+/**
+ * Streaming reader of a tables JSON file, a single JSON object mapping table names to table objects.
+ * Only one table object is materialized at a time.
+ */
+class TablesJsonReader implements Closeable {
+
+    private final Reader reader;
+    private final JSONTokener tokener;
+
+    /**
+     * Reader constructor.
+     *
+     * @param filePath of JSON file containing tables
+     * @throws IOException if an I/O error occurs opening the file
+     */
+    TablesJsonReader(Path filePath) throws IOException {
+        this.reader = Files.newBufferedReader(filePath);
+        this.tokener = new JSONTokener(reader);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Reads the tables one by one, handing each to the consumer before the next one is parsed.
+     *
+     * @param consumer accepting table name (e.g "table-0001-590") and table {@link JSONObject}
+     * @throws JSONException if the file is not a JSON object of table objects
+     */
+    void forEachTable(BiConsumer<String, JSONObject> consumer) throws JSONException {
+        if (tokener.nextClean() != '{') {
+            throw tokener.syntaxError("A tables JSON text must begin with '{'");
+        }
+        if (tokener.nextClean() == '}') {
+            return;
+        }
+        tokener.back();
+        while (true) {
+            var key = tokener.nextValue();
+            if (!(key instanceof String)) {
+                throw tokener.syntaxError("Expected a table name");
+            }
+            if (tokener.nextClean() != ':') {
+                throw tokener.syntaxError("Expected a ':' after a table name");
+            }
+            var value = tokener.nextValue();
+            if (!(value instanceof JSONObject)) {
+                throw tokener.syntaxError("Expected a table object for " + key);
+            }
+            consumer.accept((String) key, (JSONObject) value);
+            switch (tokener.nextClean()) {
+                case ',':
+                    continue;
+                case '}':
+                    return;
+                default:
+                    throw tokener.syntaxError("Expected a ',' or '}'");
+            }
+        }
+    }
+}
@@ -1,26 +1,49 @@
 package main;
 
+import hnsw.HnswIndex;
+import hnsw.HnswIndexBuilder;
 import index.ENWikiIndexer;
 import index.TableIndexer;
+import metrics.SearchMetrics;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexNotFoundException;
 import picocli.CommandLine;
+import search.BatchSearcher;
 import search.ENWikiSearcher;
+import search.FeatureCache;
+import search.ParameterSweep;
+import search.SearchServer;
 import search.TableReranker;
 import search.TableSearcher;
 import utils.Consts;
+import utils.LuceneTools;
 import utils.PropertyUtils;
 import utils.QueryWithId;
 import utils.TRECEvaluationMaker;
+import utils.TRECEvaluator;
+import utils.TRECRunWriter;
+import word_embedding.DL4JWordEmbeddings;
+import word_embedding.MappedWordEmbeddings;
+import word_embedding.QuantizationDriftReport;
+import word_embedding.WordEmbeddings;
 import word_embedding.WordVectorBuilder;
 
 import java.io.IOException;
+import java.math.BigInteger;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.HashMap;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.Map;
+import java.util.stream.Stream;
 
 import static utils.Consts.PROPERTIES_FILENAME;
 
@@ -33,6 +56,10 @@ public class Main {
     private TableIndexer tableIndexer;
     private ENWikiIndexer enWikiIndexer;
     private TableSearcher tableSearcher;
+    private TableReranker tableReranker;
+    private ENWikiSearcher enWikiSearcher;
+    private FeatureCache featureCache;
+    private WordEmbeddings wordEmbeddings;
 
     public Main(PropertyUtils propertyUtils) throws IOException {
         this.propertyUtils = propertyUtils;
@@ -64,8 +91,26 @@ public class Main {
 
         var main = new Main(propertyUtils);
 
+        // word vectors conversion
+        if (parseResult.hasMatchedOption('c')
+                && mainOptions.convertWordVectors) {
+            logger.info("Converting word vectors...");
+            main.convertWordVectors();
+        }
+        // word vectors pruning
+        else if (parseResult.hasMatchedOption("prune_vectors")
+                && mainOptions.pruneWordVectors) {
+            logger.info("Pruning word vectors...");
+            main.pruneWordVectors();
+        }
+        // quantized word vectors drift report
+        else if (parseResult.hasMatchedOption("embedding_drift_report")
+                && mainOptions.embeddingDriftReport) {
+            logger.info("Reporting word vectors drift...");
+            main.reportEmbeddingDrift();
+        }
         // wiki indexing
-        if (parseResult.hasMatchedOption('w')
+        else if (parseResult.hasMatchedOption('w')
                 && mainOptions.indexWiki) {
             logger.info("Indexing ENWiki...");
             main.requireWikiIndex();
@@ -78,6 +123,12 @@ public class Main {
             main.requireTablesIndex();
             main.indexTables(propertyUtils.getJsonTableDirectory());
         }
+        // hnsw index building
+        else if (parseResult.hasMatchedOption("build_hnsw")
+                && mainOptions.buildHnsw) {
+            logger.info("Building HNSW index...");
+            main.buildHnswIndex();
+        }
         // search
         else {
             main.requireTablesIndex();
@@ -111,20 +162,27 @@ public class Main {
 
                     logger.info("Parsed perform search on all queries in queries file (defined by properties) from user");
 
-                    var queriesResults = new HashMap<QueryWithId, Map<String, Double>>();
                     try (var queriesStream = propertyUtils.getQueriesStream()) {
-                        var queryWithIdIterator = queriesStream.iterator();
-                        while (queryWithIdIterator.hasNext()) {
-                            var queryWithId = queryWithIdIterator.next();
-                            var scoresForTable = main.searchTableNamesWithScores(queryWithId);
-                            queriesResults.put(queryWithId, scoresForTable);
-                        }
+                        main.searchAll(queriesStream);
+                    }
+                } else if (parseResult.hasMatchedOption("sweep")
+                        && mainOptions.sweep) {
+
+                    logger.info("Parsed sweep the re-ranking parameters on all queries in queries file from user");
+
+                    try (var queriesStream = propertyUtils.getQueriesStream()) {
+                        main.sweep(queriesStream);
                     }
-                    var trecEvaluationMaker = new TRECEvaluationMaker();
-                    trecEvaluationMaker.createReport(propertyUtils.getTRECOutputDirectory(), queriesResults);
+                } else if (parseResult.hasMatchedOption("serve")
+                        && mainOptions.serve) {
+
+                    logger.info("Parsed serve searches over http from user");
+                    main.serve();
                 }
             } catch (IndexDoesNotExistException e) {
                 logger.error(e.getMessage());
+            } finally {
+                main.closeSearcher();
             }
         }
     }
@@ -134,26 +192,149 @@ public class Main {
         var tablesIndexDirectory = this.propertyUtils.getTablesIndexDirectory();
         this.tableIndexer =
                 new TableIndexer(tableStrategy,
-                        tablesIndexDirectory);
+                        tablesIndexDirectory,
+                        this.propertyUtils.isTablesIndexEmbeddings() ? requireWordEmbeddings() : null,
+                        this.propertyUtils.getIndexThreads(),
+                        this.propertyUtils.getIndexRamBufferSizeMB());
     }
 
     private void initEnwiki() throws IOException {
-        var enWikiIndexStrategy = this.propertyUtils.getENWikiIndexStrategy();
+        var enWikiIndexStrategy = this.propertyUtils.isEnWikiIndexEmbeddings()
+                ? this.propertyUtils.getENWikiIndexStrategy(requireWordEmbeddings())
+                : this.propertyUtils.getENWikiIndexStrategy();
         var enWikiIndexDirectory = this.propertyUtils.getEnWikiIndexDirectory();
         this.enWikiIndexer = new ENWikiIndexer(enWikiIndexStrategy,
-                enWikiIndexDirectory);
+                enWikiIndexDirectory,
+                this.propertyUtils.getEnWikiIndexThreads(),
+                this.propertyUtils.getEnWikiQueueCapacity());
     }
 
     private void initSearcher() throws IOException {
         var tableStrategy = this.propertyUtils.getTableStrategy();
         var tablesIndexDirectory = this.propertyUtils.getTablesIndexDirectory();
         var enWikiIndexDirectory = this.propertyUtils.getEnWikiIndexDirectory();
-        var wordVectorsFile = this.propertyUtils.getWordVectorsFile();
-        var wordVectors = new WordVectorBuilder().buildFromFile(wordVectorsFile);
-        var enwikiSearcher = new ENWikiSearcher(enWikiIndexDirectory);
+        var wordEmbeddings = requireWordEmbeddings();
+        this.enWikiSearcher = new ENWikiSearcher(enWikiIndexDirectory, this.propertyUtils.getEnWikiCacheSize());
+        var featureCacheFile = this.propertyUtils.getFeatureCacheFile();
+        if (featureCacheFile != null) {
+            this.featureCache = FeatureCache.open(featureCacheFile,
+                    LuceneTools.indexVersion(tablesIndexDirectory),
+                    LuceneTools.indexVersion(enWikiIndexDirectory),
+                    new WordVectorBuilder().modelVersion(this.propertyUtils.getWordVectorsFile(),
+                            this.propertyUtils.getWordVectorsMappedFile(),
+                            this.propertyUtils.getWordVectorsPrunedFile(), prunedVectorsSource()));
+        }
+
+        this.tableReranker = new TableReranker(wordEmbeddings, enWikiSearcher, tableStrategy,
+                this.propertyUtils.getRerankThreads(), featureCache, this.propertyUtils.getRerankCascadeCandidates());
+        this.tableSearcher = new TableSearcher(tablesIndexDirectory, tableReranker, tableStrategy,
+                openHnswIndex(tablesIndexDirectory), this.propertyUtils.getDenseCandidates(),
+                this.propertyUtils.getHnswEfSearch(), this.propertyUtils.getRerankFirstStageCandidates(),
+                this.propertyUtils.getRerankTopCandidates());
+        SearchMetrics.get().registerMBean();
+    }
+
+    /**
+     * @return the HNSW index of the tables index if dense retrieval is enabled, and it exists and is up to date
+     */
+    private HnswIndex openHnswIndex(Path tablesIndexDirectory) throws IOException {
+        if (this.propertyUtils.getDenseCandidates() <= 0) {
+            return null;
+        }
+        var hnswFile = this.propertyUtils.getHnswFile();
+        if (!Files.exists(hnswFile)) {
+            logger.warn("HNSW index " + hnswFile + " does not exist, searching with BM25 only. Build it with --build_hnsw");
+            return null;
+        }
+        var hnswIndex = HnswIndex.open(hnswFile);
+        if (!hnswIndex.getIndexVersion().equals(LuceneTools.indexVersion(tablesIndexDirectory))) {
+            logger.warn("HNSW index " + hnswFile + " was built from another tables index, searching with BM25 only."
+                    + " Re-build it with --build_hnsw");
+            return null;
+        }
+        logger.info("Opened HNSW index of " + hnswIndex.size() + " tables");
+        return hnswIndex;
+    }
+
+    private void buildHnswIndex() throws IOException {
+        var hnswFile = this.propertyUtils.getHnswFile();
+        new HnswIndexBuilder(requireWordEmbeddings(), this.propertyUtils.getTableStrategy(),
+                this.propertyUtils.getHnswM(), this.propertyUtils.getHnswEfConstruction())
+                .build(this.propertyUtils.getTablesIndexDirectory(), hnswFile);
+        var efSearch = this.propertyUtils.getHnswEfSearch();
+        var recall = HnswIndex.open(hnswFile).estimateRecall(10, efSearch, 100);
+        logger.info(String.format("Estimated recall@10 of the HNSW index with ef %d: %.3f", efSearch, recall));
+    }
+
+    private WordEmbeddings requireWordEmbeddings() throws IOException {
+        if (wordEmbeddings == null) {
+            var wordVectorsFile = this.propertyUtils.getWordVectorsFile();
+            var wordVectorsMappedFile = this.propertyUtils.getWordVectorsMappedFile();
+            var wordVectorsPrunedFile = this.propertyUtils.getWordVectorsPrunedFile();
+            wordEmbeddings = new WordVectorBuilder().buildEmbeddings(wordVectorsFile, wordVectorsMappedFile,
+                    wordVectorsPrunedFile, prunedVectorsSource());
+        }
+        return wordEmbeddings;
+    }
+
+    /**
+     * @return versions of both indexes and hash of the queries file, the pruned word vectors are only used
+     * while they are the ones the vectors were pruned for
+     */
+    private String prunedVectorsSource() throws IOException {
+        var queriesFile = this.propertyUtils.getQueriesFile();
+        var queriesHash = "none";
+        if (Files.isRegularFile(queriesFile)) {
+            try {
+                var digest = MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(queriesFile));
+                queriesHash = new BigInteger(1, digest).toString(16);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return "tables_index=" + indexVersionOrNone(this.propertyUtils.getTablesIndexDirectory()) + "\n"
+                + "enwiki_index=" + indexVersionOrNone(this.propertyUtils.getEnWikiIndexDirectory()) + "\n"
+                + "queries=" + queriesHash + "\n";
+    }
+
+    private static String indexVersionOrNone(Path indexDirectory) throws IOException {
+        try {
+            return LuceneTools.indexVersion(indexDirectory);
+        } catch (IndexNotFoundException | NoSuchFileException e) {
+            return "none";
+        }
+    }
 
-        var tableReranker = new TableReranker(wordVectors, enwikiSearcher, tableStrategy);
-        this.tableSearcher = new TableSearcher(tablesIndexDirectory, tableReranker, tableStrategy);
+    private void convertWordVectors() throws IOException {
+        new WordVectorBuilder().convert(this.propertyUtils.getWordVectorsFile(),
+                this.propertyUtils.getWordVectorsMappedFile(),
+                this.propertyUtils.getWordVectorsEncoding());
+    }
+
+    private void pruneWordVectors() throws IOException {
+        var queryTokens = new ArrayList<String>();
+        try (var queriesStream = this.propertyUtils.getQueriesStream()) {
+            queriesStream.forEach(queryWithId -> queryTokens.addAll(
+                    LuceneTools.tokenizeString(LuceneTools.englishAnalyzer(), queryWithId.getQueryText())));
+        }
+        new WordVectorBuilder().prune(this.propertyUtils.getWordVectorsFile(),
+                this.propertyUtils.getWordVectorsMappedFile(),
+                this.propertyUtils.getWordVectorsPrunedFile(),
+                List.of(this.propertyUtils.getTablesIndexDirectory(), this.propertyUtils.getEnWikiIndexDirectory()),
+                queryTokens,
+                this.propertyUtils.getWordVectorsEncoding(),
+                prunedVectorsSource());
+    }
+
+    private void reportEmbeddingDrift() throws IOException {
+        var embeddings = requireWordEmbeddings();
+        if (!(embeddings instanceof MappedWordEmbeddings)) {
+            logger.error("Drift report requires converted word vectors, run --convert_vectors first");
+            return;
+        }
+        var reference = new DL4JWordEmbeddings(new WordVectorBuilder().buildFromFile(this.propertyUtils.getWordVectorsFile()));
+        new QuantizationDriftReport(reference, (MappedWordEmbeddings) embeddings)
+                .report(QuantizationDriftReport.SAMPLES_DEFAULT, QuantizationDriftReport.GROUP_SIZE_DEFAULT, 0);
     }
 
     private void requireWikiIndex() throws IOException, IndexDoesNotExistException {
@@ -177,6 +358,25 @@ public class Main {
             initSearcher();
     }
 
+    private void closeSearcher() throws IOException {
+        if (tableSearcher != null) {
+            tableSearcher.close();
+            tableSearcher = null;
+        }
+        if (tableReranker != null) {
+            tableReranker.close();
+            tableReranker = null;
+        }
+        if (enWikiSearcher != null) {
+            enWikiSearcher.close();
+            enWikiSearcher = null;
+        }
+        if (featureCache != null) {
+            featureCache.close();
+            featureCache = null;
+        }
+    }
+
     private void indexTables(Path directoryPath) throws IOException {
         tableIndexer.index(directoryPath);
         tableIndexer.close();
@@ -188,11 +388,69 @@ public class Main {
     }
 
     private Map<String, Double> searchTableNamesWithScores(QueryWithId queryWithId) throws IOException {
-        return tableSearcher.searchTableNamesWithScores(queryWithId.getQueryText());
+        return tableSearcher.searchTableNamesWithScores(queryWithId);
+    }
+
+    private void searchAll(Stream<QueryWithId> queries) throws IOException {
+        var qrelsFile = propertyUtils.getQrelsFile();
+        var evaluator = qrelsFile != null && Files.exists(qrelsFile)
+                ? TRECEvaluator.fromQrels(qrelsFile, propertyUtils.getEvaluationCutoffs())
+                : null;
+        var searchMetrics = SearchMetrics.get();
+        searchMetrics.reset();
+        var start = System.nanoTime();
+        try (var runWriter = new TRECRunWriter(propertyUtils.getTRECOutputDirectory(), evaluator)) {
+            new BatchSearcher(tableSearcher, propertyUtils.getBatchThreads()).search(queries, runWriter::write);
+            runWriter.finish();
+            logger.info("Wrote TREC report " + runWriter.getReportPath());
+        }
+        var seconds = (System.nanoTime() - start) / 1e9;
+        logger.info(String.format("Searched %d queries in %.1fs, %.2f queries/s",
+                searchMetrics.getQueries(), seconds, searchMetrics.getQueries() / seconds));
+        searchMetrics.summary().forEach(logger::info);
+        if (evaluator != null) {
+            logger.info("Evaluated " + evaluator.getEvaluatedQueries() + " queries against " + qrelsFile);
+            evaluator.summary().forEach((metric, value) -> logger.info(String.format("%s\t%.4f", metric, value)));
+        }
+    }
+
+    private void sweep(Stream<QueryWithId> queries) throws IOException {
+        var sweep = new ParameterSweep(propertyUtils.getSweepGammas(), propertyUtils.getSweepDepths(),
+                propertyUtils.getSweepCutoffs(), propertyUtils.getSweepCascadeCandidates());
+        new BatchSearcher(tableSearcher, propertyUtils.getBatchThreads())
+                .searchCandidateFeatures(queries, sweep.getMaxDepth(), sweep::add);
+        var qrelsFile = propertyUtils.getQrelsFile();
+        var qrels = qrelsFile != null && Files.exists(qrelsFile) ? TRECEvaluator.readQrels(qrelsFile) : null;
+        var sweepDirectory = propertyUtils.getTRECOutputDirectory()
+                .resolve("sweep-" + TRECEvaluationMaker.DATE_TIME_FORMATTER.format(LocalDateTime.now()));
+        sweep.writeReports(sweepDirectory, qrels, propertyUtils.getEvaluationCutoffs());
+    }
+
+    /**
+     * Serves searches until the JVM is shut down. The shutdown hook waits for the server to drain and for the
+     * searcher to be closed by the calling thread.
+     */
+    private void serve() throws IOException {
+        var stopped = new CountDownLatch(1);
+        var servingThread = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            stopped.countDown();
+            try {
+                servingThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "search-server-shutdown"));
+        try (var server = new SearchServer(tableSearcher, propertyUtils.getServerPort(), propertyUtils.getServerThreads())) {
+            server.start();
+            stopped.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     private Map<Document, Double> searchTableDocuments(QueryWithId queryWithId) throws IOException {
-        return tableSearcher.searchDocumentsWithScores(queryWithId.getQueryText());
+        return tableSearcher.searchDocumentsWithScores(queryWithId);
     }
 
     private static class IndexDoesNotExistException extends RuntimeException {
@@ -211,6 +469,18 @@ public class Main {
         @CommandLine.Option(names = {"-w", "--wiki"}, description = "index the wiki xml dump")
         boolean indexWiki;
 
+        @CommandLine.Option(names = {"-c", "--convert_vectors"}, description = "convert the word2vec model to the memory-mapped format")
+        boolean convertWordVectors;
+
+        @CommandLine.Option(names = {"--prune_vectors"}, description = "prune the word2vec model to the vocabulary of the indexes and queries")
+        boolean pruneWordVectors;
+
+        @CommandLine.Option(names = {"--embedding_drift_report"}, description = "report the similarity drift of the converted word vectors from the word2vec model")
+        boolean embeddingDriftReport;
+
+        @CommandLine.Option(names = {"--build_hnsw"}, description = "build the HNSW vector index of the tables index for dense retrieval")
+        boolean buildHnsw;
+
         @CommandLine.Option(names = {"-p", "--properties_file"}, description = "explicit properties file")
         Path propertyFile;
 
@@ -223,6 +493,12 @@ public class Main {
         @CommandLine.Option(names = {"-a", "--all_queries"}, description = "perform search on all queries in queries file (defined by properties)")
         boolean allQueries;
 
+        @CommandLine.Option(names = {"--sweep"}, description = "evaluate the grid of re-ranking parameters (defined by properties) on all queries")
+        boolean sweep;
+
+        @CommandLine.Option(names = {"--serve"}, description = "serve searches over http until interrupted")
+        boolean serve;
+
     }
 
 }
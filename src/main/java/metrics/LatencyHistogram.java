@@ -0,0 +1,85 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram over logarithmic buckets, 8 per power of two from 1 microsecond to about
+ * 18 minutes, so percentiles are reported within about 9% of the recorded latency.
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS_PER_DOUBLING = 8;
+    private static final int DOUBLINGS = 30;
+    private static final long MIN_NANOS = 1_000;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS_PER_DOUBLING * DOUBLINGS + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        buckets.incrementAndGet(bucket(nanos));
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.get();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    public long getMeanNanos() {
+        var recorded = count.get();
+        return recorded == 0 ? 0 : totalNanos.get() / recorded;
+    }
+
+    /**
+     * @param percentile percentile between 0 and 100
+     * @return upper bound of the bucket holding the percentile, 0 if nothing was recorded
+     */
+    public long percentileNanos(double percentile) {
+        var recorded = count.get();
+        if (recorded == 0) {
+            return 0;
+        }
+        var rank = (long) Math.ceil(percentile / 100 * recorded);
+        var seen = 0L;
+        for (int i = 0; i < buckets.length(); i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), maxNanos.get());
+            }
+        }
+        return maxNanos.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+
+    private static int bucket(long nanos) {
+        if (nanos <= MIN_NANOS) {
+            return 0;
+        }
+        var bucket = (int) Math.ceil(BUCKETS_PER_DOUBLING * Math.log((double) nanos / MIN_NANOS) / Math.log(2));
+        return Math.min(bucket, BUCKETS_PER_DOUBLING * DOUBLINGS);
+    }
+
+    private static long upperBound(int bucket) {
+        return (long) (MIN_NANOS * Math.pow(2, (double) bucket / BUCKETS_PER_DOUBLING));
+    }
+}
@@ -0,0 +1,77 @@
+package metrics;
+
+import utils.QueryWithId;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Time spent by one query in every {@link Stage}. Stages timed on the re-rank threads are summed over the
+ * threads, so with concurrent re-ranking they may add up to more than the query took.
+ */
+public class QueryTrace {
+
+    private final QueryWithId queryWithId;
+    private final SearchMetrics searchMetrics;
+    private final long startNanos = System.nanoTime();
+    private final AtomicLongArray stageNanos = new AtomicLongArray(Stage.values().length);
+    private final AtomicIntegerArray stageCounts = new AtomicIntegerArray(Stage.values().length);
+
+    QueryTrace(QueryWithId queryWithId, SearchMetrics searchMetrics) {
+        this.queryWithId = queryWithId;
+        this.searchMetrics = searchMetrics;
+    }
+
+    /**
+     * Records a stage which started at the given {@link System#nanoTime()} and ended now.
+     *
+     * @param stage      the stage
+     * @param startNanos start of the stage
+     */
+    public void recordSince(Stage stage, long startNanos) {
+        record(stage, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records a stage, also in the process-wide latency histogram of the stage.
+     *
+     * @param stage the stage
+     * @param nanos duration of the stage
+     */
+    public void record(Stage stage, long nanos) {
+        stageNanos.addAndGet(stage.ordinal(), nanos);
+        stageCounts.incrementAndGet(stage.ordinal());
+        searchMetrics.histogram(stage).record(nanos);
+    }
+
+    public QueryWithId getQueryWithId() {
+        return queryWithId;
+    }
+
+    long getStartNanos() {
+        return startNanos;
+    }
+
+    public long getNanos(Stage stage) {
+        return stageNanos.get(stage.ordinal());
+    }
+
+    @Override
+    public String toString() {
+        var trace = new StringBuilder(String.format(Locale.ROOT, "query %d '%s':",
+                queryWithId.getId(), queryWithId.getQueryText()));
+        for (var stage : Stage.values()) {
+            var count = stageCounts.get(stage.ordinal());
+            if (count == 0) {
+                continue;
+            }
+            trace.append(String.format(Locale.ROOT, " %s=%.2fms", stage.name().toLowerCase(Locale.ROOT),
+                    getNanos(stage) / 1e6));
+            if (count > 1) {
+                trace.append('/').append(count);
+            }
+        }
+        return trace.toString();
+    }
+}
@@ -0,0 +1,215 @@
+package metrics;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import utils.QueryWithId;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Process-wide search instrumentation: a latency histogram per {@link Stage}, counters of the wiki and feature
+ * cache hits and of the failed re-rankings, and a {@link QueryTrace} per query, logged at debug level by the
+ * {@code metrics.QueryTrace} logger.
+ * <p>
+ * The searching thread owns the trace of its query from {@link #startTrace(QueryWithId)} to
+ * {@link #finishTrace(QueryTrace)}; the re-ranker hands it to its threads through the query context.
+ */
+public class SearchMetrics implements SearchMetricsMXBean {
+
+    public static final String OBJECT_NAME = "ir.tableir:type=SearchMetrics";
+
+    private static final Logger logger = LogManager.getLogger(SearchMetrics.class);
+    private static final Logger traceLogger = LogManager.getLogger(QueryTrace.class);
+
+    private static final SearchMetrics INSTANCE = new SearchMetrics();
+
+    private final Map<Stage, LatencyHistogram> histograms = new EnumMap<>(Stage.class);
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong failedReranks = new AtomicLong();
+    private final AtomicLong cascadePruned = new AtomicLong();
+    private final AtomicLong wikiCacheHits = new AtomicLong();
+    private final AtomicLong wikiCacheMisses = new AtomicLong();
+    private final AtomicLong featureCacheHits = new AtomicLong();
+    private final AtomicLong featureCacheMisses = new AtomicLong();
+    private final ThreadLocal<QueryTrace> currentTrace = new ThreadLocal<>();
+    private final AtomicReference<QueryTrace> slowestTrace = new AtomicReference<>();
+
+    private SearchMetrics() {
+        for (var stage : Stage.values()) {
+            histograms.put(stage, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * @return the process-wide instance
+     */
+    public static SearchMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server, once per process.
+     */
+    public void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // registered by an earlier searcher of this process
+        } catch (JMException e) {
+            logger.warn("Could not register the search metrics MBean", e);
+        }
+    }
+
+    /**
+     * Starts the trace of a query searched by the calling thread.
+     *
+     * @param queryWithId the query
+     * @return the trace, to be passed to {@link #finishTrace(QueryTrace)}
+     */
+    public QueryTrace startTrace(QueryWithId queryWithId) {
+        var trace = new QueryTrace(queryWithId, this);
+        currentTrace.set(trace);
+        return trace;
+    }
+
+    /**
+     * @param queryWithId query to trace if the calling thread is not searching one
+     * @return trace of the query searched by the calling thread, or a trace of its own which is not logged
+     */
+    public QueryTrace currentTrace(QueryWithId queryWithId) {
+        var trace = currentTrace.get();
+        return trace != null ? trace : new QueryTrace(queryWithId, this);
+    }
+
+    /**
+     * Ends the trace of the query searched by the calling thread, recording its {@link Stage#SEARCH} time.
+     *
+     * @param trace trace returned by {@link #startTrace(QueryWithId)}
+     */
+    public void finishTrace(QueryTrace trace) {
+        currentTrace.remove();
+        trace.recordSince(Stage.SEARCH, trace.getStartNanos());
+        queries.incrementAndGet();
+        slowestTrace.accumulateAndGet(trace, (slowest, candidate) ->
+                slowest == null || candidate.getNanos(Stage.SEARCH) > slowest.getNanos(Stage.SEARCH) ? candidate : slowest);
+        traceLogger.debug(trace);
+    }
+
+    LatencyHistogram histogram(Stage stage) {
+        return histograms.get(stage);
+    }
+
+    public void failedRerank() {
+        failedReranks.incrementAndGet();
+    }
+
+    /**
+     * @param candidates number of candidates the cheap phase of the re-ranking cascade dropped
+     */
+    public void cascadePruned(int candidates) {
+        cascadePruned.addAndGet(candidates);
+    }
+
+    public void wikiCacheLookup(boolean hit) {
+        (hit ? wikiCacheHits : wikiCacheMisses).incrementAndGet();
+    }
+
+    public void featureCacheLookup(boolean hit) {
+        (hit ? featureCacheHits : featureCacheMisses).incrementAndGet();
+    }
+
+    @Override
+    public long getQueries() {
+        return queries.get();
+    }
+
+    @Override
+    public long getFailedReranks() {
+        return failedReranks.get();
+    }
+
+    @Override
+    public long getCascadePruned() {
+        return cascadePruned.get();
+    }
+
+    @Override
+    public long getWikiCacheHits() {
+        return wikiCacheHits.get();
+    }
+
+    @Override
+    public long getWikiCacheMisses() {
+        return wikiCacheMisses.get();
+    }
+
+    @Override
+    public long getFeatureCacheHits() {
+        return featureCacheHits.get();
+    }
+
+    @Override
+    public long getFeatureCacheMisses() {
+        return featureCacheMisses.get();
+    }
+
+    @Override
+    public Map<String, StageStatistics> getStages() {
+        var stages = new LinkedHashMap<String, StageStatistics>();
+        histograms.forEach((stage, histogram) -> stages.put(stage.name(), new StageStatistics(histogram)));
+        return stages;
+    }
+
+    @Override
+    public String getSlowestQueryTrace() {
+        var trace = slowestTrace.get();
+        return trace == null ? "" : trace.toString();
+    }
+
+    @Override
+    public void reset() {
+        histograms.values().forEach(LatencyHistogram::reset);
+        queries.set(0);
+        failedReranks.set(0);
+        cascadePruned.set(0);
+        wikiCacheHits.set(0);
+        wikiCacheMisses.set(0);
+        featureCacheHits.set(0);
+        featureCacheMisses.set(0);
+        slowestTrace.set(null);
+    }
+
+    /**
+     * @return human readable summary, one line per stage and one per counter
+     */
+    public List<String> summary() {
+        var lines = new ArrayList<String>();
+        lines.add(String.format(Locale.ROOT, "%-16s %9s %10s %10s %10s %10s %10s",
+                "stage", "count", "mean ms", "p50 ms", "p95 ms", "p99 ms", "max ms"));
+        getStages().forEach((stage, statistics) -> {
+            if (statistics.getCount() > 0) {
+                lines.add(String.format(Locale.ROOT, "%-16s %9d %10.3f %10.3f %10.3f %10.3f %10.3f",
+                        stage.toLowerCase(Locale.ROOT), statistics.getCount(), statistics.getMeanMillis(),
+                        statistics.getP50Millis(), statistics.getP95Millis(), statistics.getP99Millis(),
+                        statistics.getMaxMillis()));
+            }
+        });
+        lines.add("queries " + getQueries() + ", failed re-rankings " + getFailedReranks()
+                + ", candidates pruned by the cascade " + getCascadePruned());
+        lines.add("wiki cache hits " + getWikiCacheHits() + ", misses " + getWikiCacheMisses());
+        lines.add("feature cache hits " + getFeatureCacheHits() + ", misses " + getFeatureCacheMisses());
+        lines.add("slowest " + getSlowestQueryTrace());
+        return lines;
+    }
+}
@@ -0,0 +1,38 @@
+package metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of the {@link SearchMetrics}, registered as {@value SearchMetrics#OBJECT_NAME}.
+ */
+public interface SearchMetricsMXBean {
+
+    long getQueries();
+
+    long getFailedReranks();
+
+    /**
+     * @return number of candidates dropped by the cheap phase of the re-ranking cascade
+     */
+    long getCascadePruned();
+
+    long getWikiCacheHits();
+
+    long getWikiCacheMisses();
+
+    long getFeatureCacheHits();
+
+    long getFeatureCacheMisses();
+
+    /**
+     * @return latency percentiles per stage name
+     */
+    Map<String, StageStatistics> getStages();
+
+    /**
+     * @return trace of the slowest query since the last reset
+     */
+    String getSlowestQueryTrace();
+
+    void reset();
+}
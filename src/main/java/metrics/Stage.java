@@ -0,0 +1,47 @@
+package metrics;
+
+/**
+ * Timed stages of a search, see {@link SearchMetrics}.
+ */
+public enum Stage {
+    /**
+     * The whole search of a query.
+     */
+    SEARCH,
+    /**
+     * Parsing the query of the first stage.
+     */
+    PARSE_QUERY,
+    /**
+     * First stage (BM25) retrieval.
+     */
+    FIRST_STAGE,
+    /**
+     * Dense (HNSW) retrieval of the first stage, fused with the BM25 candidates.
+     */
+    DENSE_RETRIEVAL,
+    /**
+     * Re-ranking all the first stage candidates, including the stages below.
+     */
+    RERANK,
+    /**
+     * Analyzing and embedding the query.
+     */
+    QUERY_EMBEDDING,
+    /**
+     * Loading the stored fields of the first stage candidates.
+     */
+    STORED_FIELDS,
+    /**
+     * Looking up the wiki article of a table's page, and its stored embedding or text.
+     */
+    WIKI_LOOKUP,
+    /**
+     * Tokenizing table labels or article text into word ids.
+     */
+    TOKENIZATION,
+    /**
+     * Reading stored mean word vectors, or averaging the word vectors of tokenized text.
+     */
+    EMBEDDING
+}
@@ -0,0 +1,47 @@
+package metrics;
+
+/**
+ * Latency percentiles of a {@link Stage}, in milliseconds.
+ */
+public class StageStatistics {
+
+    private final long count;
+    private final double meanMillis;
+    private final double p50Millis;
+    private final double p95Millis;
+    private final double p99Millis;
+    private final double maxMillis;
+
+    StageStatistics(LatencyHistogram histogram) {
+        this.count = histogram.getCount();
+        this.meanMillis = histogram.getMeanNanos() / 1e6;
+        this.p50Millis = histogram.percentileNanos(50) / 1e6;
+        this.p95Millis = histogram.percentileNanos(95) / 1e6;
+        this.p99Millis = histogram.percentileNanos(99) / 1e6;
+        this.maxMillis = histogram.getMaxNanos() / 1e6;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMeanMillis() {
+        return meanMillis;
+    }
+
+    public double getP50Millis() {
+        return p50Millis;
+    }
+
+    public double getP95Millis() {
+        return p95Millis;
+    }
+
+    public double getP99Millis() {
+        return p99Millis;
+    }
+
+    public double getMaxMillis() {
+        return maxMillis;
+    }
+}
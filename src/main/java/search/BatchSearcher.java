@@ -0,0 +1,121 @@
+package search;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import utils.QueryWithId;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Runs a batch of queries concurrently over a shared {@link TableSearcher}.
+ */
+public class BatchSearcher {
+
+    private static final Logger logger = LogManager.getLogger(BatchSearcher.class);
+
+    private final TableSearcher tableSearcher;
+    private final int parallelism;
+
+    /**
+     * Batch searcher constructor.
+     *
+     * @param tableSearcher searcher shared by all queries of the batch
+     * @param parallelism   number of queries searched concurrently
+     */
+    public BatchSearcher(TableSearcher tableSearcher, int parallelism) {
+        this.tableSearcher = tableSearcher;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Searches all the queries, returning once every query is answered.
+     *
+     * @param queries queries to search
+     * @return map of table names with scores per query
+     * @throws IOException if an I/O error occurs searching any of the queries
+     */
+    public Map<QueryWithId, Map<String, Double>> search(Stream<QueryWithId> queries) throws IOException {
+        var queriesResults = new LinkedHashMap<QueryWithId, Map<String, Double>>();
+        search(queries, queriesResults::put);
+        return queriesResults;
+    }
+
+    /**
+     * Searches all the queries, handing the results of every query to the consumer in the order of the queries,
+     * as soon as the query and all the queries before it are answered.
+     *
+     * @param queries  queries to search
+     * @param consumer consumer of the table names with scores, called from the calling thread only
+     * @throws IOException if an I/O error occurs searching any of the queries or consuming the results
+     */
+    public void search(Stream<QueryWithId> queries, ResultsConsumer<Map<String, Double>> consumer) throws IOException {
+        run(queries, queryWithId -> tableSearcher.searchTableNamesWithScores(queryWithId), consumer);
+    }
+
+    /**
+     * Retrieves the first stage candidates of all the queries with their re-ranking features, handing them to the
+     * consumer in the order of the queries, see {@link TableSearcher#searchCandidateFeatures(QueryWithId, int)}.
+     *
+     * @param queries  queries to search
+     * @param depth    number of first stage candidates per query
+     * @param consumer consumer of the candidates features, called from the calling thread only
+     * @throws IOException if an I/O error occurs searching any of the queries or consuming the results
+     */
+    public void searchCandidateFeatures(Stream<QueryWithId> queries, int depth,
+                                        ResultsConsumer<CandidateFeatures[]> consumer) throws IOException {
+        run(queries, queryWithId -> tableSearcher.searchCandidateFeatures(queryWithId, depth), consumer);
+    }
+
+    private <T> void run(Stream<QueryWithId> queries, QuerySearch<T> querySearch, ResultsConsumer<T> consumer)
+            throws IOException {
+        var executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            var queriesWithId = new ArrayList<QueryWithId>();
+            var futures = new ArrayList<Future<T>>();
+            queries.forEach(queryWithId -> {
+                queriesWithId.add(queryWithId);
+                futures.add(executor.submit(() -> {
+                    logger.info("Searching " + queryWithId);
+                    return querySearch.search(queryWithId);
+                }));
+            });
+            for (int i = 0; i < futures.size(); i++) {
+                consumer.accept(queriesWithId.get(i), futures.get(i).get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while searching the queries", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Consumer of the results of a query.
+     *
+     * @param <T> type of the results
+     */
+    @FunctionalInterface
+    public interface ResultsConsumer<T> {
+
+        void accept(QueryWithId queryWithId, T results) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface QuerySearch<T> {
+
+        T search(QueryWithId queryWithId) throws IOException;
+    }
+}
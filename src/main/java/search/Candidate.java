@@ -0,0 +1,63 @@
+package search;
+
+import org.apache.lucene.document.Document;
+import utils.Consts;
+
+/**
+ * A first stage candidate with the stored fields the search needs, loaded once per query by
+ * {@link TableReranker#loadCandidates(org.apache.lucene.search.ScoreDoc[], org.apache.lucene.search.IndexSearcher)}.
+ * The same view is re-ranked and turned into the results.
+ */
+public class Candidate {
+
+    private final int docID;
+    private final float score;
+    private final float bm25Score;
+    private final Document document;
+
+    Candidate(int docID, float score, float bm25Score, Document document) {
+        this.docID = docID;
+        this.score = score;
+        this.bm25Score = bm25Score;
+        this.document = document;
+    }
+
+    /**
+     * @return the candidate with another score
+     */
+    Candidate withScore(float score) {
+        return new Candidate(docID, score, bm25Score, document);
+    }
+
+    public int getDocID() {
+        return docID;
+    }
+
+    public float getScore() {
+        return score;
+    }
+
+    /**
+     * @return BM25 score of the first stage, which differs from the first stage score of a hybrid first stage
+     * (see {@link TableSearcher}), 0 for tables only the dense retrieval found
+     */
+    public float getBm25Score() {
+        return bm25Score;
+    }
+
+    /**
+     * @return the loaded stored fields: the table name, the page title, and the table labels unless the index
+     * keeps them in doc values
+     */
+    public Document getDocument() {
+        return document;
+    }
+
+    public String getTableName() {
+        return document.get(Consts.TABLE_NAME);
+    }
+
+    public String getPageTitle() {
+        return document.get(Consts.PAGE_TITLE);
+    }
+}
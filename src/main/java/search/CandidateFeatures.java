@@ -0,0 +1,133 @@
+package search;
+
+/**
+ * Re-ranking features of a first stage candidate: its first stage and BM25 scores and the cosine similarities
+ * of the query to the table labels and to the wiki article of the table's page.
+ * <p>
+ * The features do not depend on the re-ranking parameters, so a candidate can be scored under any
+ * {@code gamma} without touching the indexes again.
+ */
+public class CandidateFeatures {
+
+    private final int docID;
+    private final String tableName;
+    private final float firstStageScore;
+    private final float bm25Score;
+    private final double tableCosine;
+    private final double wikiCosine;
+    private final boolean reranked;
+
+    public CandidateFeatures(int docID, String tableName, float firstStageScore, double tableCosine, double wikiCosine) {
+        this(docID, tableName, firstStageScore, firstStageScore, tableCosine, wikiCosine);
+    }
+
+    /**
+     * Features constructor.
+     *
+     * @param docID           doc id of the table
+     * @param tableName       table name
+     * @param firstStageScore first stage score, fused with the dense retrieval by a hybrid first stage
+     * @param bm25Score       BM25 score, see {@link Candidate#getBm25Score()}
+     * @param tableCosine     similarity of the query to the table labels
+     * @param wikiCosine      similarity of the query to the wiki article of the table's page
+     */
+    public CandidateFeatures(int docID, String tableName, float firstStageScore, float bm25Score, double tableCosine,
+                             double wikiCosine) {
+        this(docID, tableName, firstStageScore, bm25Score, tableCosine, wikiCosine, true);
+    }
+
+    private CandidateFeatures(int docID, String tableName, float firstStageScore, float bm25Score,
+                              double tableCosine, double wikiCosine, boolean reranked) {
+        this.docID = docID;
+        this.tableName = tableName;
+        this.firstStageScore = firstStageScore;
+        this.bm25Score = bm25Score;
+        this.tableCosine = tableCosine;
+        this.wikiCosine = wikiCosine;
+        this.reranked = reranked;
+    }
+
+    /**
+     * Candidate whose re-ranking features could not be extracted, it keeps its first stage score under
+     * any parameters, as {@link TableReranker#rerank} keeps the first stage order when re-ranking fails.
+     */
+    public static CandidateFeatures firstStageOnly(int docID, String tableName, float firstStageScore,
+                                                   float bm25Score) {
+        return new CandidateFeatures(docID, tableName, firstStageScore, bm25Score, Double.NaN, Double.NaN, false);
+    }
+
+    public int getDocID() {
+        return docID;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public float getFirstStageScore() {
+        return firstStageScore;
+    }
+
+    public float getBm25Score() {
+        return bm25Score;
+    }
+
+    public double getTableCosine() {
+        return tableCosine;
+    }
+
+    public double getWikiCosine() {
+        return wikiCosine;
+    }
+
+    public boolean isReranked() {
+        return reranked;
+    }
+
+    /**
+     * @param gamma weight of the table labels similarity, the wiki article similarity weighs {@code 1 - gamma}
+     * @return re-ranking score of the candidate
+     */
+    public float score(double gamma) {
+        if (!reranked) {
+            return firstStageScore;
+        }
+        return (float) ((1 - gamma) * wikiCosine + gamma * tableCosine);
+    }
+
+    /**
+     * @param maxBm25Score highest BM25 score of the candidates of the query
+     * @return score of the candidate in the cheap phase of the re-ranking cascade, see
+     * {@link #cascadeScore(float, float, double)}
+     */
+    public double cascadeScore(float maxBm25Score) {
+        return cascadeScore(bm25Score, maxBm25Score, reranked ? tableCosine : 0);
+    }
+
+    /**
+     * Score of the cheap phase of the re-ranking cascade, which needs no wiki article: the BM25 score normalized
+     * by the highest of the query's candidates, plus the table labels similarity. The BM25 score is used even
+     * after a hybrid first stage, as the fused scores of the candidates are too close to separate them.
+     *
+     * @param bm25Score    BM25 score of the candidate, 0 if only the dense retrieval found it
+     * @param maxBm25Score highest BM25 score of the candidates of the query
+     * @param tableCosine  similarity of the query to the table labels
+     * @return cheap phase score
+     */
+    public static double cascadeScore(float bm25Score, float maxBm25Score, double tableCosine) {
+        var normalizedBm25Score = maxBm25Score > 0 ? bm25Score / maxBm25Score : 0;
+        return normalizedBm25Score + tableCosine;
+    }
+
+    @Override
+    public String toString() {
+        return "CandidateFeatures{" +
+                "docID=" + docID +
+                ", tableName='" + tableName + '\'' +
+                ", firstStageScore=" + firstStageScore +
+                ", bm25Score=" + bm25Score +
+                ", tableCosine=" + tableCosine +
+                ", wikiCosine=" + wikiCosine +
+                '}';
+    }
+}
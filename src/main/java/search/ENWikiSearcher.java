@@ -1,46 +1,148 @@
 package search;
 
 import index.ENWikiAnalyzerBuilder;
+import metrics.SearchMetrics;
+import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.queryparser.classic.QueryParser;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import strategy.enwiki.ENWikiIndexStrategy;
+import utils.LuceneTools;
+import word_embedding.VectorCodec;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
 
-public class ENWikiSearcher {
+/**
+ * Searcher over the ENWiki index.
+ * <p>
+ * The index reader and analyzer are opened once and shared by all lookups. Title lookups go through a
+ * size-bounded LRU cache keyed by the normalized title, as many tables share the same page title. The index is
+ * searched with the normalized title as plain terms, so every title of a key finds the same article.
+ * The reader is never re-opened, so cached doc ids stay valid for the lifetime of the searcher.
+ */
+public class ENWikiSearcher implements Closeable {
 
-    private final Path enWikiIndexDirectory;
+    public static final int CACHE_SIZE_DEFAULT = 10_000;
 
-    public ENWikiSearcher(Path enWikiIndexDirectory) {
-        this.enWikiIndexDirectory = enWikiIndexDirectory;
+    public static final int NO_DOCUMENT = -1;
+
+    private final Directory directory;
+    private final DirectoryReader directoryReader;
+    private final IndexSearcher indexSearcher;
+    private final Analyzer analyzer;
+    private final Map<String, Integer> topDocumentCache;
+
+    public ENWikiSearcher(Path enWikiIndexDirectory) throws IOException {
+        this(enWikiIndexDirectory, CACHE_SIZE_DEFAULT);
     }
 
-    public Document searchTopDocument(String queryString) throws IOException {
-        try {
-            var analyzer = new ENWikiAnalyzerBuilder().build();
+    /**
+     * Searcher constructor, opens the ENWiki index.
+     *
+     * @param enWikiIndexDirectory location of the ENWiki index directory
+     * @param cacheSize            maximal number of cached title lookups
+     * @throws IOException if an I/O error occurs opening the index
+     */
+    public ENWikiSearcher(Path enWikiIndexDirectory, int cacheSize) throws IOException {
+        this.directory = FSDirectory.open(enWikiIndexDirectory);
+        this.directoryReader = DirectoryReader.open(directory);
+        this.indexSearcher = new IndexSearcher(directoryReader);
+        this.analyzer = new ENWikiAnalyzerBuilder().build();
+        this.topDocumentCache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    /**
+     * Close the Searcher.
+     *
+     * @throws IOException if an I/O error occurs closing the index
+     */
+    @Override
+    public void close() throws IOException {
+        directoryReader.close();
+        directory.close();
+        analyzer.close();
+    }
+
+    /**
+     * Returns the best matching article for the given title. Every call is one cache lookup, so the article is
+     * resolved once and then read with {@link #document(int)} or {@link #documentEmbedding(int)}.
+     *
+     * @param queryString title to look for
+     * @return doc id of the top article or {@link #NO_DOCUMENT} if nothing matched
+     * @throws IOException if an I/O error occurs reading the index
+     */
+    public int searchTopDocID(String queryString) throws IOException {
+        var key = normalize(queryString);
+        var cached = topDocumentCache.get(key);
+        SearchMetrics.get().wikiCacheLookup(cached != null);
+        if (cached != null) {
+            return cached;
+        }
+        // concurrent misses on the same title may both search, the results are identical
+        var docID = searchIndex(key);
+        topDocumentCache.put(key, docID);
+        return docID;
+    }
+
+    /**
+     * @param docID doc id of an article, see {@link #searchTopDocID(String)}
+     * @return the article {@link Document} or null for {@link #NO_DOCUMENT}
+     * @throws IOException if an I/O error occurs reading the index
+     */
+    public Document document(int docID) throws IOException {
+        return docID == NO_DOCUMENT ? null : indexSearcher.doc(docID);
+    }
 
+    /**
+     * @param docID doc id of an article, see {@link #searchTopDocID(String)}
+     * @return precomputed mean word vector of the article text, or null for {@link #NO_DOCUMENT} or if the index
+     * was built without embeddings
+     * @throws IOException if an I/O error occurs reading the index
+     */
+    public float[] documentEmbedding(int docID) throws IOException {
+        if (docID == NO_DOCUMENT) {
+            return null;
+        }
+        var bytesRef = LuceneTools.readBinaryDocValue(directoryReader, ENWikiIndexStrategy.FIELD_TEXT_EMBEDDING, docID);
+        return bytesRef == null ? null : VectorCodec.decode(bytesRef);
+    }
+
+    private int searchIndex(String normalizedTitle) throws IOException {
+        try {
+            // QueryParser is not thread safe, hence one per lookup
             var query = new QueryParser(ENWikiIndexStrategy.FIELD_TITLE, analyzer)
-                    .parse(queryString);
+                    .parse(QueryParser.escape(normalizedTitle));
 
-            var fsDirectory = FSDirectory.open(enWikiIndexDirectory);
-            var directoryReader = DirectoryReader.open(fsDirectory);
-            var indexSearcher = new IndexSearcher(directoryReader);
             var topDocs = indexSearcher.search(query, 1);
 
             var scoreDocs = topDocs.scoreDocs;
             if (topDocs.totalHits.value > 0) {
-                return indexSearcher.doc(scoreDocs[0].doc);
+                return scoreDocs[0].doc;
             } else {
-                return null;
+                return NO_DOCUMENT;
             }
 
         } catch (ParseException e) {
             throw new IllegalArgumentException(e.getMessage());
         }
     }
+
+    private static String normalize(String title) {
+        return title.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
 }
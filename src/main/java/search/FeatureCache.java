@@ -0,0 +1,212 @@
+package search;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent cache of the re-ranking features of (query id, table name) pairs, so repeated runs over the same
+ * queries skip the wiki lookups and embedding work of the pairs already scored.
+ * <p>
+ * The features are kept in an append-only binary file, loaded into an in-memory index when the cache is opened:
+ * <pre>
+ * header: int magic, int version, UTF tables index version, UTF wiki index version,
+ *         UTF word vectors model version
+ * record: long query id, short table name length, UTF-8 table name, double table cosine, double wiki cosine
+ * </pre>
+ * The file is cleared when either index version or the model version differs from the header, so re-building
+ * an index or converting, re-encoding or pruning the word vectors invalidates the cache. A record cut short by
+ * an interrupted run is dropped on open.
+ */
+public class FeatureCache implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger(FeatureCache.class);
+
+    private static final int MAGIC = 0x46434348; // "FCCH"
+    private static final int VERSION = 2;
+
+    private final ConcurrentHashMap<Key, double[]> features = new ConcurrentHashMap<>();
+    private final FileChannel channel;
+    private final DataOutputStream output;
+
+    private FeatureCache(FileChannel channel) {
+        this.channel = channel;
+        this.output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+    }
+
+    /**
+     * Opens the cache file, creating it if it does not exist or was written for other index or model versions.
+     *
+     * @param cacheFile          location of the cache file
+     * @param tablesIndexVersion version of the tables index, see {@link utils.LuceneTools#indexVersion(Path)}
+     * @param enWikiIndexVersion version of the ENWiki index
+     * @param modelVersion       version of the word vectors model, see
+     *                           {@link word_embedding.WordVectorBuilder#modelVersion(Path, Path, Path, String)}
+     * @return the cache
+     * @throws IOException if an I/O error occurs reading or creating the file
+     */
+    public static FeatureCache open(Path cacheFile, String tablesIndexVersion, String enWikiIndexVersion,
+                                    String modelVersion) throws IOException {
+        var header = header(tablesIndexVersion, enWikiIndexVersion, modelVersion);
+        if (cacheFile.getParent() != null) {
+            Files.createDirectories(cacheFile.getParent());
+        }
+        var content = Files.exists(cacheFile) ? ByteBuffer.wrap(Files.readAllBytes(cacheFile)) : null;
+        var channel = FileChannel.open(cacheFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            var cache = new FeatureCache(channel);
+            long appendPosition;
+            if (content != null && content.remaining() >= header.length
+                    && ByteBuffer.wrap(header).equals(content.slice().limit(header.length))) {
+                appendPosition = header.length + cache.load(content.position(header.length).slice());
+                logger.info("Loaded " + cache.size() + " cached features from " + cacheFile);
+            } else {
+                if (content != null) {
+                    logger.info("Feature cache " + cacheFile
+                            + " was written for other index or model versions, clearing it");
+                }
+                channel.truncate(0);
+                channel.write(ByteBuffer.wrap(header), 0);
+                appendPosition = header.length;
+            }
+            channel.truncate(appendPosition);
+            channel.position(appendPosition);
+            return cache;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Loads the records into the in-memory index.
+     *
+     * @return length of the complete records
+     */
+    private long load(ByteBuffer records) {
+        var end = 0;
+        try {
+            while (records.hasRemaining()) {
+                var queryId = records.getLong();
+                var name = new byte[Short.toUnsignedInt(records.getShort())];
+                records.get(name);
+                var tableCosine = records.getDouble();
+                var wikiCosine = records.getDouble();
+                features.put(new Key(queryId, new String(name, StandardCharsets.UTF_8)),
+                        new double[]{tableCosine, wikiCosine});
+                end = records.position();
+            }
+        } catch (BufferUnderflowException e) {
+            logger.warn("Dropping the incomplete last feature cache record");
+        }
+        return end;
+    }
+
+    private static byte[] header(String tablesIndexVersion, String enWikiIndexVersion, String modelVersion)
+            throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        try (var headerOutput = new DataOutputStream(bytes)) {
+            headerOutput.writeInt(MAGIC);
+            headerOutput.writeInt(VERSION);
+            headerOutput.writeUTF(tablesIndexVersion);
+            headerOutput.writeUTF(enWikiIndexVersion);
+            headerOutput.writeUTF(modelVersion);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return number of cached pairs
+     */
+    public int size() {
+        return features.size();
+    }
+
+    /**
+     * @param queryId   stable query id, see {@link utils.QueryWithId#isStableId()}
+     * @param tableName table name
+     * @return {table cosine, wiki cosine} of the pair, or null if it is not cached
+     */
+    public double[] get(long queryId, String tableName) {
+        return features.get(new Key(queryId, tableName));
+    }
+
+    /**
+     * Caches the features of a pair, appending them to the file unless the pair is already cached.
+     *
+     * @param queryId     stable query id
+     * @param tableName   table name
+     * @param tableCosine similarity of the query to the table labels
+     * @param wikiCosine  similarity of the query to the wiki article of the table's page
+     * @throws IOException if an I/O error occurs appending to the file
+     */
+    public void put(long queryId, String tableName, double tableCosine, double wikiCosine) throws IOException {
+        if (features.putIfAbsent(new Key(queryId, tableName), new double[]{tableCosine, wikiCosine}) != null) {
+            return;
+        }
+        var name = tableName.getBytes(StandardCharsets.UTF_8);
+        synchronized (output) {
+            output.writeLong(queryId);
+            output.writeShort(name.length);
+            output.write(name);
+            output.writeDouble(tableCosine);
+            output.writeDouble(wikiCosine);
+        }
+    }
+
+    /**
+     * Close the cache, flushing the appended features.
+     *
+     * @throws IOException if an I/O error occurs writing the file
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (output) {
+            output.close();
+        }
+        channel.close();
+    }
+
+    private static final class Key {
+
+        private final long queryId;
+        private final String tableName;
+
+        private Key(long queryId, String tableName) {
+            this.queryId = queryId;
+            this.tableName = tableName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            var key = (Key) o;
+            return queryId == key.queryId && tableName.equals(key.tableName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(queryId, tableName);
+        }
+    }
+}
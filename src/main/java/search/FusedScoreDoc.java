@@ -0,0 +1,24 @@
+package search;
+
+import org.apache.lucene.search.ScoreDoc;
+
+/**
+ * A document of the hybrid first stage: its score is the reciprocal rank fusion score, and its BM25 score is kept
+ * for the cheap phase of the re-ranking cascade, see {@link TableSearcher#fuse(ScoreDoc[], ScoreDoc[], int)}.
+ */
+class FusedScoreDoc extends ScoreDoc {
+
+    private final float bm25Score;
+
+    FusedScoreDoc(int doc, float score, float bm25Score) {
+        super(doc, score);
+        this.bm25Score = bm25Score;
+    }
+
+    /**
+     * @return BM25 score of the document of a first stage ranking, 0 for documents only the dense retrieval found
+     */
+    static float bm25Score(ScoreDoc scoreDoc) {
+        return scoreDoc instanceof FusedScoreDoc ? ((FusedScoreDoc) scoreDoc).bm25Score : scoreDoc.score;
+    }
+}
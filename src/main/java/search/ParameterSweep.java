@@ -0,0 +1,149 @@
+package search;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import utils.QueryWithId;
+import utils.TRECEvaluator;
+import utils.TRECRunWriter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Evaluates a grid of re-ranking parameters from the candidates features of every query, so the first stage
+ * retrieval, the wiki lookups and the embedding math run once for the whole grid.
+ * <p>
+ * A configuration re-ranks the {@code depth} best first stage candidates by their score under {@code gamma}
+ * (see {@link CandidateFeatures#score(double)}) and keeps the {@code cutoff} best, as
+ * {@link TableSearcher#searchDocumentsWithScores(QueryWithId)} does with its first stage and top candidates and
+ * {@link TableReranker#GAMMA}.
+ * With a {@code cascade} only the best {@code cascade} candidates of the cheap phase are re-ranked, as the re-ranker's
+ * cascade does (see {@link CandidateFeatures#cascadeScore(float)}), 0 re-ranks them all.
+ */
+public class ParameterSweep {
+
+    private static final Logger logger = LogManager.getLogger(ParameterSweep.class);
+
+    private final double[] gammas;
+    private final int[] depths;
+    private final int[] cutoffs;
+    private final int[] cascades;
+    private final Map<QueryWithId, CandidateFeatures[]> queriesFeatures = new LinkedHashMap<>();
+
+    /**
+     * Sweep constructor.
+     *
+     * @param gammas  weights of the table labels similarity
+     * @param depths  numbers of first stage candidates re-ranked
+     * @param cutoffs  numbers of re-ranked candidates kept
+     * @param cascades numbers of candidates kept by the cheap phase of the re-ranking cascade, 0 for no cascade
+     */
+    public ParameterSweep(double[] gammas, int[] depths, int[] cutoffs, int[] cascades) {
+        this.gammas = gammas.clone();
+        this.depths = depths.clone();
+        this.cutoffs = cutoffs.clone();
+        this.cascades = cascades.clone();
+    }
+
+    /**
+     * @return number of first stage candidates to extract the features of, the deepest configuration
+     */
+    public int getMaxDepth() {
+        return Arrays.stream(depths).max().orElse(TableSearcher.N_BEFORE_RERANK_DEFAULT);
+    }
+
+    /**
+     * Adds the candidates of a query, retrieved with at least {@link #getMaxDepth()} candidates.
+     *
+     * @param queryWithId        query
+     * @param candidatesFeatures features of the candidates, in first stage order
+     */
+    public void add(QueryWithId queryWithId, CandidateFeatures[] candidatesFeatures) {
+        queriesFeatures.put(queryWithId, candidatesFeatures);
+    }
+
+    /**
+     * Writes one TREC run per configuration under the directory, evaluating each run when judgments are given,
+     * and a {@code summary.tsv} with the metrics of every configuration.
+     *
+     * @param sweepDirectory    directory of the runs
+     * @param qrels             relevance judgments, or null to only write the runs
+     * @param evaluationCutoffs ranks k of NDCG@k and P@k
+     * @throws IOException if an I/O error occurs writing the runs
+     */
+    public void writeReports(Path sweepDirectory, Map<Long, Map<String, Integer>> qrels, int[] evaluationCutoffs)
+            throws IOException {
+        Files.createDirectories(sweepDirectory);
+        try (var summary = Files.newBufferedWriter(sweepDirectory.resolve("summary.tsv"))) {
+            var headerWritten = false;
+            for (var gamma : gammas) {
+                for (var depth : depths) {
+                    for (var cutoff : cutoffs) {
+                        for (var cascade : cascades) {
+                            var runName = String.format(Locale.ROOT, "gamma-%s_depth-%d_top-%d", gamma, depth, cutoff)
+                                    + (cascade > 0 ? "_cascade-" + cascade : "");
+                            var evaluator = qrels == null ? null : new TRECEvaluator(qrels, evaluationCutoffs);
+                            try (var runWriter = new TRECRunWriter(sweepDirectory, runName, evaluator)) {
+                                for (var entry : queriesFeatures.entrySet()) {
+                                    runWriter.write(entry.getKey(), rank(entry.getValue(), gamma, depth, cutoff, cascade));
+                                }
+                            }
+                            if (evaluator == null) {
+                                continue;
+                            }
+                            var metrics = evaluator.summary();
+                            if (!headerWritten) {
+                                summary.write("gamma\tdepth\tcutoff\tcascade\t" + String.join("\t", metrics.keySet())
+                                        + "\n");
+                                headerWritten = true;
+                            }
+                            var line = new StringBuilder(String.format(Locale.ROOT, "%s\t%d\t%d\t%d",
+                                    gamma, depth, cutoff, cascade));
+                            metrics.values().forEach(value -> line.append(String.format(Locale.ROOT, "\t%.4f", value)));
+                            summary.write(line.append('\n').toString());
+                            logger.info(runName + "\t" + metrics);
+                        }
+                    }
+                }
+            }
+        }
+        logger.info("Wrote " + gammas.length * depths.length * cutoffs.length * cascades.length + " sweep runs to "
+                + sweepDirectory);
+    }
+
+    /**
+     * Re-ranks the {@code depth} best first stage candidates under {@code gamma}, or the {@code cascade} best of
+     * them by the cheap phase, and keeps the {@code cutoff} best.
+     *
+     * @return score per table name
+     */
+    static Map<String, Double> rank(CandidateFeatures[] candidatesFeatures, double gamma, int depth, int cutoff,
+                                    int cascade) {
+        var reranked = Arrays.copyOf(candidatesFeatures, Math.min(depth, candidatesFeatures.length));
+        if (cascade > 0 && cascade < reranked.length) {
+            var maxBm25Score = Float.NEGATIVE_INFINITY;
+            for (var candidateFeatures : reranked) {
+                maxBm25Score = Math.max(maxBm25Score, candidateFeatures.getBm25Score());
+            }
+            var max = maxBm25Score;
+            var candidates = reranked;
+            var survivors = TopK.best(candidates.length, cascade, i -> candidates[i].cascadeScore(max));
+            // back to first stage order as in TableReranker#rerank
+            Arrays.sort(survivors);
+            reranked = Arrays.stream(survivors).mapToObj(i -> candidates[i]).toArray(CandidateFeatures[]::new);
+        }
+        var candidates = reranked;
+        // candidates with equal scores keep their first stage order as in TableReranker#rerank
+        var best = TopK.best(candidates.length, cutoff, i -> candidates[i].score(gamma));
+        var results = new LinkedHashMap<String, Double>();
+        for (var i : best) {
+            results.put(candidates[i].getTableName(), (double) candidates[i].score(gamma));
+        }
+        return results;
+    }
+}
@@ -0,0 +1,74 @@
+package search;
+
+import metrics.QueryTrace;
+import org.apache.lucene.util.IntsRefBuilder;
+import utils.QueryWithId;
+
+import java.util.List;
+
+/**
+ * Query-only state of a re-ranking, built once per query by {@link TableReranker#createQueryContext(QueryWithId)}
+ * and shared by the scoring of all the candidates of the query.
+ */
+public class QueryContext {
+
+    private final QueryWithId queryWithId;
+    private final QueryTrace trace;
+    private final List<String> queryLabels;
+    private final float[] normalizedQueryMean;
+    private final ThreadLocal<float[]> buffers;
+    private final ThreadLocal<IntsRefBuilder> idBuffers = ThreadLocal.withInitial(IntsRefBuilder::new);
+
+    QueryContext(QueryWithId queryWithId, QueryTrace trace, List<String> queryLabels, float[] normalizedQueryMean,
+                 int dimension) {
+        this.queryWithId = queryWithId;
+        this.trace = trace;
+        this.queryLabels = queryLabels;
+        this.normalizedQueryMean = normalizedQueryMean;
+        // candidates of one query may be scored concurrently, each scoring thread gets its own buffer
+        this.buffers = ThreadLocal.withInitial(() -> new float[dimension]);
+    }
+
+    public QueryWithId getQueryWithId() {
+        return queryWithId;
+    }
+
+    /**
+     * @return trace the stages of the query are recorded in, from any scoring thread
+     */
+    public QueryTrace getTrace() {
+        return trace;
+    }
+
+    public String getQueryString() {
+        return queryWithId.getQueryText();
+    }
+
+    /**
+     * @return analyzed query tokens
+     */
+    public List<String> getQueryLabels() {
+        return queryLabels;
+    }
+
+    /**
+     * @return unit length mean word vector of the query, or null if no query word is known
+     */
+    public float[] getNormalizedQueryMean() {
+        return normalizedQueryMean;
+    }
+
+    /**
+     * @return vector buffer of the calling thread, its content is overwritten by the next use
+     */
+    float[] buffer() {
+        return buffers.get();
+    }
+
+    /**
+     * @return word ids buffer of the calling thread, its content is overwritten by the next use
+     */
+    IntsRefBuilder idBuffer() {
+        return idBuffers.get();
+    }
+}
@@ -0,0 +1,160 @@
+package search;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import utils.QueryWithId;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local HTTP endpoint over a warm {@link TableSearcher}, so a lookup does not pay for loading the word vectors
+ * and opening the indexes.
+ * <p>
+ * {@code GET /search?q=<query>} answers with the ranked table names and scores:
+ * <pre>
+ * {"query": "...", "results": [{"table": "...", "score": 0.42}, ...]}
+ * </pre>
+ * {@code GET /health} answers {@code {"status": "ok"}}. The server listens on the loopback address only and
+ * handles requests on a fixed worker pool; {@link #close()} stops accepting requests and lets the ones in
+ * flight finish.
+ */
+public class SearchServer implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger(SearchServer.class);
+
+    private static final int STOP_DELAY_SECONDS = 5; // grace period of the requests in flight on close
+
+    private final TableSearcher tableSearcher;
+    private final HttpServer httpServer;
+    private final ExecutorService executor;
+
+    /**
+     * Server constructor, binds the port without accepting requests until {@link #start()}.
+     *
+     * @param tableSearcher searcher answering the requests, not owned by the server
+     * @param port          port on the loopback address, 0 picks a free one
+     * @param threads       number of requests handled concurrently
+     * @throws IOException if the port cannot be bound
+     */
+    public SearchServer(TableSearcher tableSearcher, int port, int threads) throws IOException {
+        this.tableSearcher = tableSearcher;
+        this.httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), workerThreadFactory());
+        httpServer.setExecutor(executor);
+        httpServer.createContext("/search", this::handleSearch);
+        httpServer.createContext("/health", exchange -> respond(exchange, 200, new JSONObject().put("status", "ok")));
+    }
+
+    public void start() {
+        httpServer.start();
+        logger.info("Serving searches on http://" + getAddress().getHostString() + ":" + getAddress().getPort() + "/search?q=");
+    }
+
+    public InetSocketAddress getAddress() {
+        return httpServer.getAddress();
+    }
+
+    /**
+     * Stop the Server, waiting for the requests in flight to finish.
+     */
+    @Override
+    public void close() {
+        logger.info("Stopping the search server...");
+        httpServer.stop(STOP_DELAY_SECONDS);
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(STOP_DELAY_SECONDS, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void handleSearch(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            respond(exchange, 405, error("Only GET is supported"));
+            return;
+        }
+        var queryString = queryParameters(exchange.getRequestURI()).get("q");
+        if (queryString == null || queryString.isBlank()) {
+            respond(exchange, 400, error("Missing query parameter 'q'"));
+            return;
+        }
+        try {
+            // ad-hoc queries get a generated id, so they never populate the feature cache
+            var results = tableSearcher.searchTableNamesWithScores(new QueryWithId(queryString));
+            respond(exchange, 200, new JSONObject()
+                    .put("query", queryString)
+                    .put("results", ranked(results)));
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, error(e.getMessage()));
+        } catch (IOException | RuntimeException e) {
+            logger.error("Search failed for query '" + queryString + "'", e);
+            respond(exchange, 500, error("Search failed"));
+        }
+    }
+
+    private static JSONArray ranked(Map<String, Double> results) {
+        var entries = new ArrayList<>(results.entrySet());
+        entries.sort(Map.Entry.<String, Double>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+        var ranked = new JSONArray();
+        for (var entry : entries) {
+            ranked.put(new JSONObject().put("table", entry.getKey()).put("score", entry.getValue()));
+        }
+        return ranked;
+    }
+
+    private static Map<String, String> queryParameters(URI uri) {
+        var parameters = new HashMap<String, String>();
+        var rawQuery = uri.getRawQuery();
+        if (rawQuery == null) {
+            return parameters;
+        }
+        for (var parameter : rawQuery.split("&")) {
+            var separator = parameter.indexOf('=');
+            var name = separator < 0 ? parameter : parameter.substring(0, separator);
+            var value = separator < 0 ? "" : parameter.substring(separator + 1);
+            parameters.putIfAbsent(URLDecoder.decode(name, StandardCharsets.UTF_8),
+                    URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    private static JSONObject error(String message) {
+        return new JSONObject().put("error", message);
+    }
+
+    private static void respond(HttpExchange exchange, int status, JSONObject body) throws IOException {
+        var bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (var responseBody = exchange.getResponseBody()) {
+            responseBody.write(bytes);
+        }
+    }
+
+    private static ThreadFactory workerThreadFactory() {
+        var threadNumber = new AtomicInteger();
+        return runnable -> new Thread(runnable, "search-server-" + threadNumber.incrementAndGet());
+    }
+}
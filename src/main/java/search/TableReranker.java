@@ -1,65 +1,496 @@
 package search;
 
+import metrics.SearchMetrics;
+import metrics.Stage;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.ScoreDoc;
-import org.deeplearning4j.models.embeddings.wordvectors.WordVectors;
-import org.nd4j.linalg.ops.transforms.Transforms;
+import org.apache.lucene.util.IntsRef;
 import strategy.enwiki.ENWikiIndexStrategy;
+import strategy.table.LabelTermsCodec;
 import strategy.table.TableStrategy;
 import utils.Consts;
 import utils.LuceneTools;
+import utils.QueryWithId;
+import word_embedding.VectorCodec;
+import word_embedding.VectorMath;
+import word_embedding.WordEmbeddings;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
-public class TableReranker {
+/**
+ * Re-ranks first stage candidates by the similarity of the query to the table labels and to the wiki article
+ * of the table's page.
+ * <p>
+ * With more than one re-rank thread the candidates are scored concurrently on a fixed pool owned by the
+ * re-ranker, which is shut down on {@link #close()}.
+ * <p>
+ * With a cascade, re-ranking runs in two phases: every candidate is scored by its BM25 score and its
+ * table labels similarity (see {@link CandidateFeatures#cascadeScore(float, float, double)}), and only the
+ * best {@code cascadeCandidates} go on to the wiki article lookups of the full score. The others are dropped.
+ */
+public class TableReranker implements Closeable {
 
     public static final double GAMMA = 0.2;
     private static final Logger logger = LogManager.getLogger(TableReranker.class);
-    private final WordVectors wordVectors;
+    private final WordEmbeddings wordEmbeddings;
     private final ENWikiSearcher enWikiSearcher;
     private final TableStrategy tableStrategy;
+    private final ExecutorService executor;
+    private final FeatureCache featureCache;
+    private final int cascadeCandidates;
+    private final Analyzer analyzer = LuceneTools.englishAnalyzer();
 
-    public TableReranker(WordVectors wordVectors, ENWikiSearcher enWikiSearcher, TableStrategy tableStrategy) {
-        this.wordVectors = wordVectors;
+    public TableReranker(WordEmbeddings wordEmbeddings, ENWikiSearcher enWikiSearcher, TableStrategy tableStrategy) {
+        this(wordEmbeddings, enWikiSearcher, tableStrategy, 1);
+    }
+
+    /**
+     * Re-ranker constructor.
+     *
+     * @param wordEmbeddings word embedding model
+     * @param enWikiSearcher searcher for the wiki articles of the tables
+     * @param tableStrategy  how the tables were indexed
+     * @param rerankThreads  number of candidates scored concurrently, 1 scores them on the calling thread
+     */
+    public TableReranker(WordEmbeddings wordEmbeddings, ENWikiSearcher enWikiSearcher, TableStrategy tableStrategy,
+                         int rerankThreads) {
+        this(wordEmbeddings, enWikiSearcher, tableStrategy, rerankThreads, null);
+    }
+
+    /**
+     * Re-ranker constructor.
+     *
+     * @param wordEmbeddings word embedding model
+     * @param enWikiSearcher searcher for the wiki articles of the tables
+     * @param tableStrategy  how the tables were indexed
+     * @param rerankThreads  number of candidates scored concurrently, 1 scores them on the calling thread
+     * @param featureCache   cache of the features of queries with stable ids, or null to always compute them.
+     *                       The cache is not owned by the re-ranker
+     */
+    public TableReranker(WordEmbeddings wordEmbeddings, ENWikiSearcher enWikiSearcher, TableStrategy tableStrategy,
+                         int rerankThreads, FeatureCache featureCache) {
+        this(wordEmbeddings, enWikiSearcher, tableStrategy, rerankThreads, featureCache, 0);
+    }
+
+    /**
+     * Re-ranker constructor.
+     *
+     * @param wordEmbeddings    word embedding model
+     * @param enWikiSearcher    searcher for the wiki articles of the tables
+     * @param tableStrategy     how the tables were indexed
+     * @param rerankThreads     number of candidates scored concurrently, 1 scores them on the calling thread
+     * @param featureCache      cache of the features of queries with stable ids, or null to always compute them.
+     *                          The cache is not owned by the re-ranker
+     * @param cascadeCandidates number of candidates kept by the cheap phase of the cascade, 0 scores every
+     *                          candidate in full
+     */
+    public TableReranker(WordEmbeddings wordEmbeddings, ENWikiSearcher enWikiSearcher, TableStrategy tableStrategy,
+                         int rerankThreads, FeatureCache featureCache, int cascadeCandidates) {
+        this.featureCache = featureCache;
+        this.cascadeCandidates = cascadeCandidates;
+        this.wordEmbeddings = wordEmbeddings;
         this.enWikiSearcher = enWikiSearcher;
         this.tableStrategy = tableStrategy;
+        this.executor = rerankThreads > 1 ? Executors.newFixedThreadPool(rerankThreads, daemonThreadFactory()) : null;
+    }
+
+    /**
+     * Close the Re-ranker, stopping the re-rank threads.
+     */
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdown();
+        }
     }
 
     public ScoreDoc[] rerank(ScoreDoc[] scoreDocs, IndexSearcher indexSearcher, String queryString) throws IOException {
-        ScoreDoc[] rerankedScores = new ScoreDoc[scoreDocs.length];
+        return rerank(scoreDocs, indexSearcher, new QueryWithId(queryString));
+    }
+
+    public ScoreDoc[] rerank(ScoreDoc[] scoreDocs, IndexSearcher indexSearcher, QueryWithId queryWithId) throws IOException {
+        Candidate[] candidates;
         try {
-            for (int i = 0; i < scoreDocs.length; i++) {
-                var scoreDoc = scoreDocs[i];
-                var docID = scoreDoc.doc;
-                var newScore = calculateScore(indexSearcher.doc(docID), queryString);
-                rerankedScores[i] = new ScoreDoc(docID, newScore);
-            }
-            Arrays.sort(rerankedScores, (o1, o2) -> Float.compare(o2.score, o1.score));
+            candidates = loadCandidates(scoreDocs, indexSearcher);
         } catch (Exception e) {
+            SearchMetrics.get().failedRerank();
+            logger.warn("Re-ranking failed, keeping first stage order", e);
             return scoreDocs;
         }
-
+        var reranked = rerank(candidates, indexSearcher, queryWithId);
+        var rerankedScores = new ScoreDoc[reranked.length];
+        for (int i = 0; i < reranked.length; i++) {
+            rerankedScores[i] = new ScoreDoc(reranked[i].getDocID(), reranked[i].getScore());
+        }
         return rerankedScores;
     }
 
+    /**
+     * Re-ranks the candidates by their score under {@link #GAMMA}, see {@link CandidateFeatures#score(double)}.
+     * If re-ranking fails the candidates keep their first stage order. Candidates pruned by the cascade are
+     * dropped.
+     *
+     * @param candidates    first stage candidates, see {@link #loadCandidates(ScoreDoc[], IndexSearcher)}
+     * @param indexSearcher searcher the candidates were retrieved with
+     * @param queryWithId   the query
+     * @return the candidates with their new scores, best first
+     */
+    public Candidate[] rerank(Candidate[] candidates, IndexSearcher indexSearcher, QueryWithId queryWithId) {
+        return rerank(candidates, indexSearcher, createQueryContext(queryWithId));
+    }
+
+    public Candidate[] rerank(Candidate[] candidates, IndexSearcher indexSearcher, QueryContext queryContext) {
+        return rerank(candidates, indexSearcher, queryContext, candidates.length);
+    }
+
+    /**
+     * Re-ranks the candidates of a query that is already embedded and keeps the best, see
+     * {@link #rerank(Candidate[], IndexSearcher, QueryWithId)}. Equal scores keep the first stage order.
+     *
+     * @param candidates    first stage candidates, see {@link #loadCandidates(ScoreDoc[], IndexSearcher)}
+     * @param indexSearcher searcher the candidates were retrieved with
+     * @param queryContext  context of the query, see {@link #createQueryContext(QueryWithId)}
+     * @param top           number of candidates kept
+     * @return the best candidates with their new scores, best first
+     */
+    public Candidate[] rerank(Candidate[] candidates, IndexSearcher indexSearcher, QueryContext queryContext,
+                              int top) {
+        Candidate[] reranked;
+        try {
+            var survivors = allCandidates(candidates.length);
+            List<Double> tableCosines = null;
+            if (cascadeCandidates > 0 && cascadeCandidates < candidates.length) {
+                tableCosines = forEachCandidate(candidates.length, i -> tableCosine(candidates[i].getDocument(),
+                        labelsEmbedding(indexSearcher, candidates[i].getDocID(), queryContext), queryContext));
+                survivors = cascadeSurvivors(candidates, tableCosines);
+            }
+            var survivorIndexes = survivors;
+            var cheapPhaseCosines = tableCosines;
+            var candidatesFeatures = forEachCandidate(survivors.length, i -> extractFeatures(
+                    candidates[survivorIndexes[i]], indexSearcher, queryContext,
+                    cheapPhaseCosines == null ? Double.NaN : cheapPhaseCosines.get(survivorIndexes[i])));
+            var best = TopK.best(candidatesFeatures.size(), top, i -> candidatesFeatures.get(i).score(GAMMA));
+            reranked = new Candidate[best.length];
+            for (int i = 0; i < best.length; i++) {
+                reranked[i] = candidates[survivors[best[i]]].withScore(candidatesFeatures.get(best[i]).score(GAMMA));
+            }
+        } catch (Exception e) {
+            SearchMetrics.get().failedRerank();
+            logger.warn("Re-ranking failed, keeping first stage order", e);
+            return Arrays.copyOf(candidates, Math.min(top, candidates.length));
+        }
+
+        return reranked;
+    }
+
+    private static int[] allCandidates(int candidates) {
+        var all = new int[candidates];
+        Arrays.setAll(all, i -> i);
+        return all;
+    }
+
+    /**
+     * Cheap phase of the cascade, keeps the {@link #cascadeCandidates} best candidates by
+     * {@link CandidateFeatures#cascadeScore(float, float, double)}.
+     *
+     * @param tableCosines similarity of the query to the labels of every candidate
+     * @return indexes of the surviving candidates, in first stage order
+     */
+    private int[] cascadeSurvivors(Candidate[] candidates, List<Double> tableCosines) {
+        var maxBm25Score = Float.NEGATIVE_INFINITY;
+        for (var candidate : candidates) {
+            maxBm25Score = Math.max(maxBm25Score, candidate.getBm25Score());
+        }
+        var max = maxBm25Score;
+        var survivors = TopK.best(candidates.length, cascadeCandidates,
+                i -> CandidateFeatures.cascadeScore(candidates[i].getBm25Score(), max, tableCosines.get(i)));
+        // back to first stage order, so equal full scores keep it
+        Arrays.sort(survivors);
+        SearchMetrics.get().cascadePruned(candidates.length - survivors.length);
+        return survivors;
+    }
+
+    /**
+     * Loads the stored fields the search needs of the first stage candidates: the table name, the page title,
+     * and the fields of the table labels only if the index keeps no label doc values.
+     *
+     * @param scoreDocs     first stage candidates
+     * @param indexSearcher searcher the candidates were retrieved with
+     * @return the candidates, in the order of the score docs
+     * @throws IOException if an I/O error occurs reading the index
+     */
+    public Candidate[] loadCandidates(ScoreDoc[] scoreDocs, IndexSearcher indexSearcher) throws IOException {
+        var fields = candidateFields(indexSearcher.getIndexReader());
+        return forEachCandidate(scoreDocs.length, i -> new Candidate(scoreDocs[i].doc, scoreDocs[i].score,
+                FusedScoreDoc.bm25Score(scoreDocs[i]), indexSearcher.doc(scoreDocs[i].doc, fields)))
+                .toArray(new Candidate[0]);
+    }
+
+    private Set<String> candidateFields(IndexReader indexReader) {
+        var fields = new HashSet<>(Set.of(Consts.TABLE_NAME, Consts.PAGE_TITLE));
+        for (var leaf : indexReader.leaves()) {
+            var fieldInfos = leaf.reader().getFieldInfos();
+            if (fieldInfos.fieldInfo(Consts.LABELS_EMBEDDING) == null
+                    && fieldInfos.fieldInfo(Consts.LABEL_TERM_IDS) == null) {
+                fields.addAll(tableStrategy.getLabelFields());
+                break;
+            }
+        }
+        return fields;
+    }
+
+    public CandidateFeatures[] extractFeatures(ScoreDoc[] scoreDocs, IndexSearcher indexSearcher, String queryString)
+            throws IOException {
+        return extractFeatures(scoreDocs, indexSearcher, new QueryWithId(queryString));
+    }
+
+    public CandidateFeatures[] extractFeatures(ScoreDoc[] scoreDocs, IndexSearcher indexSearcher,
+                                               QueryWithId queryWithId) throws IOException {
+        return extractFeatures(loadCandidates(scoreDocs, indexSearcher), indexSearcher, queryWithId);
+    }
+
+    /**
+     * Extracts the re-ranking features of the first stage candidates, independent of the re-ranking parameters.
+     * Features of queries with stable ids are looked up in and added to the feature cache, if there is one.
+     *
+     * @param candidates    first stage candidates, see {@link #loadCandidates(ScoreDoc[], IndexSearcher)}
+     * @param indexSearcher searcher the candidates were retrieved with
+     * @param queryWithId   the query
+     * @return features of the candidates, in the order of the candidates
+     * @throws IOException if an I/O error occurs reading the indexes, or any candidate fails
+     */
+    public CandidateFeatures[] extractFeatures(Candidate[] candidates, IndexSearcher indexSearcher,
+                                               QueryWithId queryWithId) throws IOException {
+        return extractFeatures(candidates, indexSearcher, createQueryContext(queryWithId));
+    }
+
+    public CandidateFeatures[] extractFeatures(Candidate[] candidates, IndexSearcher indexSearcher,
+                                               QueryContext queryContext) throws IOException {
+        return forEachCandidate(candidates.length, i -> extractFeatures(candidates[i], indexSearcher, queryContext))
+                .toArray(new CandidateFeatures[0]);
+    }
+
+    /**
+     * Runs a task per candidate, concurrently on the re-rank threads if there are any.
+     *
+     * @return results of the tasks, in candidate order
+     */
+    private <T> List<T> forEachCandidate(int candidates, CandidateTask<T> task) throws IOException {
+        var results = new ArrayList<T>(candidates);
+        if (executor == null) {
+            for (int i = 0; i < candidates; i++) {
+                results.add(task.apply(i));
+            }
+            return results;
+        }
+        var tasks = new ArrayList<Callable<T>>(candidates);
+        for (int i = 0; i < candidates; i++) {
+            var candidate = i;
+            tasks.add(() -> task.apply(candidate));
+        }
+        try {
+            // futures are returned in task order, so the merge is independent of completion order
+            for (var future : executor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while re-ranking", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private CandidateFeatures extractFeatures(Candidate candidate, IndexSearcher indexSearcher,
+                                              QueryContext queryContext) throws IOException {
+        return extractFeatures(candidate, indexSearcher, queryContext, Double.NaN);
+    }
+
+    /**
+     * @param tableCosine similarity of the query to the table labels if the cascade computed it, else NaN
+     */
+    private CandidateFeatures extractFeatures(Candidate candidate, IndexSearcher indexSearcher,
+                                              QueryContext queryContext, double tableCosine) throws IOException {
+        var docID = candidate.getDocID();
+        var queryWithId = queryContext.getQueryWithId();
+        var cacheable = featureCache != null && queryWithId.isStableId();
+        if (cacheable) {
+            var cached = featureCache.get(queryWithId.getId(), candidate.getTableName());
+            SearchMetrics.get().featureCacheLookup(cached != null);
+            if (cached != null) {
+                return new CandidateFeatures(docID, candidate.getTableName(), candidate.getScore(),
+                        candidate.getBm25Score(), cached[0], cached[1]);
+            }
+        }
+        if (Double.isNaN(tableCosine)) {
+            tableCosine = tableCosine(candidate.getDocument(), labelsEmbedding(indexSearcher, docID, queryContext),
+                    queryContext);
+        }
+        var candidateFeatures = calculateFeatures(docID, candidate.getScore(), candidate.getBm25Score(),
+                candidate.getDocument(), tableCosine, queryContext);
+        if (cacheable) {
+            featureCache.put(queryWithId.getId(), candidateFeatures.getTableName(),
+                    candidateFeatures.getTableCosine(), candidateFeatures.getWikiCosine());
+        }
+        return candidateFeatures;
+    }
+
+    /**
+     * Mean word vector of the table labels from the doc values: the stored labels embedding, else the mean of
+     * the stored label terms.
+     *
+     * @return the mean in the buffer of the calling thread, or null to compute it from the document
+     */
+    private float[] labelsEmbedding(IndexSearcher indexSearcher, int docID, QueryContext queryContext)
+            throws IOException {
+        var trace = queryContext.getTrace();
+        var start = System.nanoTime();
+        var indexReader = indexSearcher.getIndexReader();
+        var labelsEmbedding = LuceneTools.readBinaryDocValue(indexReader, Consts.LABELS_EMBEDDING, docID);
+        if (labelsEmbedding != null) {
+            trace.recordSince(Stage.EMBEDDING, start);
+            return VectorCodec.decode(labelsEmbedding, queryContext.buffer());
+        }
+        var ids = LabelTermsCodec.readIds(indexReader, docID, wordEmbeddings, queryContext.idBuffer());
+        trace.recordSince(ids == null ? Stage.EMBEDDING : Stage.TOKENIZATION, start);
+        return ids == null ? null : mean(ids, queryContext);
+    }
+
+    public QueryContext createQueryContext(String queryString) {
+        return createQueryContext(new QueryWithId(queryString));
+    }
+
+    /**
+     * Analyzes and embeds the query, the work shared by all the candidates of the query.
+     *
+     * @param queryWithId the query
+     * @return context of the query
+     */
+    public QueryContext createQueryContext(QueryWithId queryWithId) {
+        var trace = SearchMetrics.get().currentTrace(queryWithId);
+        var start = System.nanoTime();
+        var queryLabels = LuceneTools.tokenizeString(analyzer, queryWithId.getQueryText());
+        var queryMean = VectorMath.normalize(wordEmbeddings.getWordVectorsMean(queryLabels));
+        trace.recordSince(Stage.QUERY_EMBEDDING, start);
+        return new QueryContext(queryWithId, trace, queryLabels, queryMean, wordEmbeddings.dimension());
+    }
+
     public float calculateScore(Document document, String queryString) throws IOException {
-        var pgTitle = document.get(Consts.PAGE_TITLE);
-        var documentLabels = tableStrategy.getDocumentLabels(document);
-        var documentMean = wordVectors.getWordVectorsMean(documentLabels);
-        var topWikiDoc = enWikiSearcher.searchTopDocument(pgTitle);
+        return calculateScore(document, null, queryString);
+    }
+
+    public float calculateScore(Document document, float[] labelsEmbedding, String queryString) throws IOException {
+        return calculateScore(document, labelsEmbedding, createQueryContext(queryString));
+    }
+
+    /**
+     * Calculates the re-ranking score of a table.
+     *
+     * @param document        table {@link Document}
+     * @param labelsEmbedding mean word vector of the table labels stored at indexing time, or null to compute it
+     *                        from the document
+     * @param queryContext    context of the query, see {@link #createQueryContext(String)}
+     * @return new score of the table
+     * @throws IOException if an I/O error occurs reading the ENWiki index
+     */
+    public float calculateScore(Document document, float[] labelsEmbedding, QueryContext queryContext) throws IOException {
+        return calculateFeatures(-1, Float.NaN, Float.NaN, document,
+                tableCosine(document, labelsEmbedding, queryContext), queryContext).score(GAMMA);
+    }
+
+    private CandidateFeatures calculateFeatures(int docID, float firstStageScore, float bm25Score, Document document,
+                                                double cosineSimDocumentToQuery, QueryContext queryContext)
+            throws IOException {
+        var wikitextMean = wikitextMean(document.get(Consts.PAGE_TITLE), queryContext);
+        var cosineSimWikitextToQuery = VectorMath.cosineSimToUnit(queryContext.getNormalizedQueryMean(), wikitextMean);
+        return new CandidateFeatures(docID, document.get(Consts.TABLE_NAME), firstStageScore, bm25Score,
+                cosineSimDocumentToQuery, cosineSimWikitextToQuery);
+    }
+
+    /**
+     * @return similarity of the query to the table labels, averaged from the document without a labels embedding
+     */
+    private double tableCosine(Document document, float[] labelsEmbedding, QueryContext queryContext) {
+        // labels embedding and the article fallback may share the thread buffer, each is used up before the next
+        var documentMean = labelsEmbedding != null
+                ? labelsEmbedding
+                : mean(labelIds(document, queryContext), queryContext);
+        return VectorMath.cosineSimToUnit(queryContext.getNormalizedQueryMean(), documentMean);
+    }
+
+    /**
+     * Mean word vector of the wiki article matching the page title. The vector precomputed at wiki indexing
+     * time is used when available, otherwise the article text is tokenized and averaged into the buffer.
+     */
+    private float[] wikitextMean(String pgTitle, QueryContext queryContext) throws IOException {
+        var trace = queryContext.getTrace();
+        var start = System.nanoTime();
+        // one lookup per candidate, the embedding and the article are both read from the resolved doc id
+        var topWikiDocID = enWikiSearcher.searchTopDocID(pgTitle);
+        var precomputed = enWikiSearcher.documentEmbedding(topWikiDocID);
+        if (precomputed != null) {
+            trace.recordSince(Stage.WIKI_LOOKUP, start);
+            return precomputed;
+        }
+        var topWikiDoc = enWikiSearcher.document(topWikiDocID);
+        trace.recordSince(Stage.WIKI_LOOKUP, start);
         var wikiText = topWikiDoc.get(ENWikiIndexStrategy.FIELD_TEXT);
-        var engAnalyzer = new EnglishAnalyzer();
-        var queryLabels = LuceneTools.tokenizeString(engAnalyzer, queryString);
-        var queryMean = wordVectors.getWordVectorsMean(queryLabels);
-        var wikitextLabels = LuceneTools.tokenizeString(engAnalyzer, wikiText);
-        var wikitextMean = wordVectors.getWordVectorsMean(wikitextLabels);
-        var cosineSimWikitextToQuery = Transforms.cosineSim(queryMean, wikitextMean);
-        var cosineSimDocumentToQuery = Transforms.cosineSim(queryMean, documentMean);
-        return (float) ((1 - GAMMA) * cosineSimWikitextToQuery + (GAMMA) * cosineSimDocumentToQuery);
+        start = System.nanoTime();
+        var wikitextIds = LuceneTools.tokenizeToIds(analyzer, wikiText, wordEmbeddings, queryContext.idBuffer());
+        trace.recordSince(Stage.TOKENIZATION, start);
+        return mean(wikitextIds, queryContext);
+    }
+
+    private IntsRef labelIds(Document document, QueryContext queryContext) {
+        var start = System.nanoTime();
+        var ids = tableStrategy.getDocumentLabelIds(document, wordEmbeddings, queryContext.idBuffer());
+        queryContext.getTrace().recordSince(Stage.TOKENIZATION, start);
+        return ids;
+    }
+
+    /**
+     * @return the buffer of the calling thread holding the mean, or null if there are no ids
+     */
+    private float[] mean(IntsRef ids, QueryContext queryContext) {
+        var start = System.nanoTime();
+        var buffer = queryContext.buffer();
+        var found = wordEmbeddings.getWordVectorsMean(ids, buffer);
+        queryContext.getTrace().recordSince(Stage.EMBEDDING, start);
+        return found ? buffer : null;
+    }
+
+    @FunctionalInterface
+    private interface CandidateTask<T> {
+        T apply(int candidate) throws IOException;
+    }
+
+    private static ThreadFactory daemonThreadFactory() {
+        var threadNumber = new AtomicInteger();
+        return runnable -> {
+            var thread = new Thread(runnable, "rerank-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
     }
 }
@@ -1,52 +1,175 @@
 package search;
 
+import hnsw.HnswIndex;
+import metrics.SearchMetrics;
+import metrics.Stage;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import strategy.table.TableStrategy;
 import utils.Consts;
+import utils.QueryWithId;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-public class TableSearcher {
+/**
+ * Searcher over the tables index.
+ * <p>
+ * Owns a single reader lifecycle through a {@link SearcherManager}: the index is opened once on construction,
+ * every query acquires and releases the current searcher, and {@link #refresh()} picks up a re-built index
+ * without re-opening unchanged segments. Instances are safe to share between concurrent queries.
+ * <p>
+ * With an {@link HnswIndex} the first stage is hybrid: the tables nearest to the query embedding are retrieved
+ * alongside the BM25 candidates and both rankings are merged by reciprocal rank fusion, so tables that share
+ * no term with the query can still reach the re-ranker.
+ */
+public class TableSearcher implements Closeable {
 
     public static final int N_TOP_DEFAULT = 20; // number of top documents
     public static final int N_BEFORE_RERANK_DEFAULT = 200; // number of documents before re-ranking
+    public static final int RRF_K = 60; // rank constant of reciprocal rank fusion
 
-    private final Path indexDirectory;
+    private static final Logger logger = LogManager.getLogger(TableSearcher.class);
+
+    private final Directory directory;
+    private final SearcherManager searcherManager;
     private final TableReranker tableReranker;
     private final TableStrategy tableStrategy;
+    private final HnswIndex hnswIndex;
+    private final int denseCandidates;
+    private final int efSearch;
+    private final int firstStageCandidates;
+    private final int topCandidates;
+    private final AtomicBoolean warnedStaleHnswIndex = new AtomicBoolean();
+
+    /**
+     * Searcher constructor, opens the tables index.
+     *
+     * @param indexDirectory location of the tables index directory
+     * @param tableReranker  re-ranker applied to first stage results
+     * @param tableStrategy  how the tables were indexed
+     * @throws IOException if an I/O error occurs opening the index
+     */
+    public TableSearcher(Path indexDirectory, TableReranker tableReranker, TableStrategy tableStrategy) throws IOException {
+        this(indexDirectory, tableReranker, tableStrategy, null, 0, 0);
+    }
+
+    /**
+     * Searcher constructor with a hybrid first stage, opens the tables index.
+     *
+     * @param indexDirectory  location of the tables index directory
+     * @param tableReranker   re-ranker applied to first stage results
+     * @param tableStrategy   how the tables were indexed
+     * @param hnswIndex       vector index of the tables index, or null for a BM25 only first stage
+     * @param denseCandidates number of tables retrieved from the vector index per query
+     * @param efSearch        search parameter of the vector index, see {@link HnswIndex#search(float[], int, int)}
+     * @throws IOException if an I/O error occurs opening the index
+     */
+    public TableSearcher(Path indexDirectory, TableReranker tableReranker, TableStrategy tableStrategy,
+                         HnswIndex hnswIndex, int denseCandidates, int efSearch) throws IOException {
+        this(indexDirectory, tableReranker, tableStrategy, hnswIndex, denseCandidates, efSearch,
+                N_BEFORE_RERANK_DEFAULT, N_TOP_DEFAULT);
+    }
 
-    public TableSearcher(Path indexDirectory, TableReranker tableReranker, TableStrategy tableStrategy) {
-        this.indexDirectory = indexDirectory;
+    /**
+     * Searcher constructor with a hybrid first stage and the cutoffs of the search phases, opens the tables index.
+     *
+     * @param indexDirectory       location of the tables index directory
+     * @param tableReranker        re-ranker applied to first stage results
+     * @param tableStrategy        how the tables were indexed
+     * @param hnswIndex            vector index of the tables index, or null for a BM25 only first stage
+     * @param denseCandidates      number of tables retrieved from the vector index per query
+     * @param efSearch             search parameter of the vector index, see
+     *                             {@link HnswIndex#search(float[], int, int)}
+     * @param firstStageCandidates number of first stage candidates re-ranked
+     * @param topCandidates        number of re-ranked candidates kept
+     * @throws IOException if an I/O error occurs opening the index
+     */
+    public TableSearcher(Path indexDirectory, TableReranker tableReranker, TableStrategy tableStrategy,
+                         HnswIndex hnswIndex, int denseCandidates, int efSearch, int firstStageCandidates,
+                         int topCandidates) throws IOException {
+        this.directory = FSDirectory.open(indexDirectory);
+        this.searcherManager = new SearcherManager(directory, null);
         this.tableReranker = tableReranker;
         this.tableStrategy = tableStrategy;
+        this.hnswIndex = denseCandidates > 0 ? hnswIndex : null;
+        this.denseCandidates = denseCandidates;
+        this.efSearch = efSearch;
+        this.firstStageCandidates = firstStageCandidates;
+        this.topCandidates = topCandidates;
+    }
+
+    /**
+     * Re-opens the reader if the index has changed since it was last opened.
+     * Searches in flight keep using the searcher they acquired.
+     *
+     * @return true if a new reader was opened
+     * @throws IOException if an I/O error occurs re-opening the index
+     */
+    public boolean refresh() throws IOException {
+        return searcherManager.maybeRefresh();
+    }
+
+    /**
+     * Close the Searcher, releasing the index reader once no search holds it anymore.
+     *
+     * @throws IOException if an I/O error occurs closing the index
+     */
+    @Override
+    public void close() throws IOException {
+        searcherManager.close();
+        directory.close();
     }
 
     public Map<Document, Double> searchDocumentsWithScores(String queryString) throws IOException {
+        return searchDocumentsWithScores(new QueryWithId(queryString));
+    }
+
+    /**
+     * Retrieves the first stage candidates of the query, re-ranks them and keeps the best, as many as the top
+     * candidates given on construction ({@link #N_TOP_DEFAULT} by default).
+     * The result documents hold the stored fields loaded for the re-ranking, see
+     * {@link TableReranker#loadCandidates(org.apache.lucene.search.ScoreDoc[], org.apache.lucene.search.IndexSearcher)}.
+     *
+     * @param queryWithId the query
+     * @return score per table document
+     * @throws IOException if an I/O error occurs searching the index
+     */
+    public Map<Document, Double> searchDocumentsWithScores(QueryWithId queryWithId) throws IOException {
+        var trace = SearchMetrics.get().startTrace(queryWithId);
+        var indexSearcher = searcherManager.acquire();
         try {
-            var query = tableStrategy.parseQuery(queryString);
+            var queryContext = tableReranker.createQueryContext(queryWithId);
+            var scoreDocs = firstStage(indexSearcher, queryContext, firstStageCandidates);
 
-            var fsDirectory = FSDirectory.open(indexDirectory);
-            var directoryReader = DirectoryReader.open(fsDirectory);
-            var indexSearcher = new IndexSearcher(directoryReader);
-            var topDocs = indexSearcher.search(query, N_BEFORE_RERANK_DEFAULT);
+            var start = System.nanoTime();
+            var candidates = tableReranker.loadCandidates(scoreDocs, indexSearcher);
+            trace.recordSince(Stage.STORED_FIELDS, start);
 
-            var scoreDocs = topDocs.scoreDocs;
-            scoreDocs = tableReranker.rerank(scoreDocs, indexSearcher, queryString);
+            start = System.nanoTime();
+            candidates = tableReranker.rerank(candidates, indexSearcher, queryContext, topCandidates);
+            trace.recordSince(Stage.RERANK, start);
 
             var ret = new HashMap<Document, Double>();
 
-            for (int i = 0; i < N_TOP_DEFAULT; i++) {
-                var scoreDoc = scoreDocs[i];
-                var docInd = scoreDoc.doc;
-                if (ret.put(indexSearcher.doc(docInd), (double) scoreDoc.score) != null) {
+            var bound = Math.min(topCandidates, candidates.length);
+            for (int i = 0; i < bound; i++) {
+                var candidate = candidates[i];
+                if (ret.put(candidate.getDocument(), (double) candidate.getScore()) != null) {
                     throw new IllegalStateException("Duplicate key");
                 }
             }
@@ -55,12 +178,132 @@ public class TableSearcher {
 
         } catch (ParseException e) {
             throw new IllegalArgumentException(e.getMessage());
+        } finally {
+            searcherManager.release(indexSearcher);
+            SearchMetrics.get().finishTrace(trace);
         }
     }
 
+    /**
+     * Retrieves the first stage candidates of the query and extracts their re-ranking features, the work
+     * shared by every re-ranking configuration.
+     * <p>
+     * If the features cannot be extracted the candidates keep their first stage scores, as in
+     * {@link #searchDocumentsWithScores(QueryWithId)}.
+     *
+     * @param queryWithId the query
+     * @param depth       number of first stage candidates
+     * @return features of the candidates, in first stage order
+     * @throws IOException if an I/O error occurs searching the index
+     */
+    public CandidateFeatures[] searchCandidateFeatures(QueryWithId queryWithId, int depth) throws IOException {
+        var trace = SearchMetrics.get().startTrace(queryWithId);
+        var indexSearcher = searcherManager.acquire();
+        try {
+            var queryContext = tableReranker.createQueryContext(queryWithId);
+            var scoreDocs = firstStage(indexSearcher, queryContext, depth);
+            var start = System.nanoTime();
+            var candidates = tableReranker.loadCandidates(scoreDocs, indexSearcher);
+            trace.recordSince(Stage.STORED_FIELDS, start);
+            start = System.nanoTime();
+            try {
+                return tableReranker.extractFeatures(candidates, indexSearcher, queryContext);
+            } catch (Exception e) {
+                SearchMetrics.get().failedRerank();
+                logger.warn("Extracting re-ranking features failed, keeping first stage order", e);
+            } finally {
+                trace.recordSince(Stage.RERANK, start);
+            }
+            var candidatesFeatures = new CandidateFeatures[candidates.length];
+            for (int i = 0; i < candidates.length; i++) {
+                candidatesFeatures[i] = CandidateFeatures.firstStageOnly(candidates[i].getDocID(),
+                        candidates[i].getTableName(), candidates[i].getScore(), candidates[i].getBm25Score());
+            }
+            return candidatesFeatures;
+        } catch (ParseException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        } finally {
+            searcherManager.release(indexSearcher);
+            SearchMetrics.get().finishTrace(trace);
+        }
+    }
+
+    /**
+     * Retrieves the BM25 candidates of the query, fused with its nearest tables in the vector index if there is
+     * one built from the searched reader.
+     *
+     * @param indexSearcher the acquired searcher
+     * @param queryContext  context of the query
+     * @param depth         number of candidates
+     * @return the candidates, best first
+     */
+    private ScoreDoc[] firstStage(IndexSearcher indexSearcher, QueryContext queryContext, int depth)
+            throws IOException, ParseException {
+        var trace = queryContext.getTrace();
+        var start = System.nanoTime();
+        var query = tableStrategy.parseQuery(queryContext.getQueryString());
+        trace.recordSince(Stage.PARSE_QUERY, start);
+
+        start = System.nanoTime();
+        var scoreDocs = indexSearcher.search(query, depth).scoreDocs;
+        trace.recordSince(Stage.FIRST_STAGE, start);
+
+        var queryMean = queryContext.getNormalizedQueryMean();
+        if (hnswIndex == null || queryMean == null || !matchesHnswIndex(indexSearcher)) {
+            return scoreDocs;
+        }
+        start = System.nanoTime();
+        var denseScoreDocs = hnswIndex.search(queryMean, denseCandidates, efSearch);
+        trace.recordSince(Stage.DENSE_RETRIEVAL, start);
+        return fuse(scoreDocs, denseScoreDocs, depth);
+    }
+
+    private boolean matchesHnswIndex(IndexSearcher indexSearcher) {
+        var indexReader = indexSearcher.getIndexReader();
+        if (indexReader instanceof DirectoryReader
+                && ((DirectoryReader) indexReader).getVersion() == hnswIndex.getReaderVersion()) {
+            return true;
+        }
+        if (warnedStaleHnswIndex.compareAndSet(false, true)) {
+            logger.warn("The tables index changed since the HNSW index was built, searching with BM25 only."
+                    + " Re-build it with --build_hnsw");
+        }
+        return false;
+    }
+
+    /**
+     * Reciprocal rank fusion: every document scores the sum of {@code 1 / (RRF_K + rank)} over the rankings it
+     * appears in. Ties keep the BM25 order, followed by the dense order. The fused documents keep their BM25
+     * score, see {@link FusedScoreDoc#bm25Score(ScoreDoc)}.
+     *
+     * @return the best {@code depth} fused documents with their fused scores, best first
+     */
+    static ScoreDoc[] fuse(ScoreDoc[] bm25ScoreDocs, ScoreDoc[] denseScoreDocs, int depth) {
+        var fusedScores = new LinkedHashMap<Integer, Float>();
+        var bm25Scores = new HashMap<Integer, Float>();
+        for (var scoreDoc : bm25ScoreDocs) {
+            bm25Scores.put(scoreDoc.doc, scoreDoc.score);
+        }
+        for (var ranking : new ScoreDoc[][]{bm25ScoreDocs, denseScoreDocs}) {
+            for (int rank = 0; rank < ranking.length; rank++) {
+                fusedScores.merge(ranking[rank].doc, 1f / (RRF_K + rank + 1), Float::sum);
+            }
+        }
+        return fusedScores.entrySet().stream()
+                .map(entry -> new FusedScoreDoc(entry.getKey(), entry.getValue(),
+                        bm25Scores.getOrDefault(entry.getKey(), 0f)))
+                .sorted((o1, o2) -> Float.compare(o2.score, o1.score))
+                .limit(depth)
+                .toArray(ScoreDoc[]::new);
+    }
+
     public Map<String, Double> searchTableNamesWithScores(String queryString) throws IOException {
+        return searchTableNamesWithScores(new QueryWithId(queryString));
+    }
+
+    public Map<String, Double> searchTableNamesWithScores(QueryWithId queryWithId) throws IOException {
         Map<String, Double> map = new HashMap<>();
-        var documentDoubleMap = searchDocumentsWithScores(queryString);
+        var documentDoubleMap = searchDocumentsWithScores(queryWithId);
         var entries = documentDoubleMap.entrySet();
         for (var documentFloatEntry : entries) {
             var document = documentFloatEntry.getKey();
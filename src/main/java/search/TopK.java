@@ -0,0 +1,49 @@
+package search;
+
+import java.util.PriorityQueue;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Selection of the best scored items with a bounded heap, instead of sorting all of them when only a few are
+ * kept.
+ */
+final class TopK {
+
+    private TopK() {
+    }
+
+    /**
+     * Selects the {@code k} best of {@code count} items. Items with equal scores keep their order, as with a
+     * stable sort.
+     *
+     * @param count number of items
+     * @param k     number of items kept
+     * @param score score of the item at an index
+     * @return indexes of the best items, best first
+     */
+    static int[] best(int count, int k, IntToDoubleFunction score) {
+        var bound = Math.max(0, Math.min(k, count));
+        var scores = new double[count];
+        for (int i = 0; i < count; i++) {
+            scores[i] = score.applyAsDouble(i);
+        }
+        // the worst kept item on top: the lowest score, of equal scores the latest item
+        var heap = new PriorityQueue<Integer>(bound + 1, (o1, o2) -> {
+            var compare = Double.compare(scores[o1], scores[o2]);
+            return compare != 0 ? compare : Integer.compare(o2, o1);
+        });
+        for (int i = 0; i < count && bound > 0; i++) {
+            if (heap.size() < bound) {
+                heap.add(i);
+            } else if (scores[i] > scores[heap.peek()]) {
+                heap.poll();
+                heap.add(i);
+            }
+        }
+        var best = new int[heap.size()];
+        for (int i = best.length - 1; i >= 0; i--) {
+            best[i] = heap.poll();
+        }
+        return best;
+    }
+}
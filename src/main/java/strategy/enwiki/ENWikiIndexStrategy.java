@@ -1,21 +1,45 @@
 package strategy.enwiki;
 
 import edu.jhu.nlp.wikipedia.WikiPage;
+import index.ENWikiAnalyzerBuilder;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.BinaryDocValuesField;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.IntPoint;
 import org.apache.lucene.document.TextField;
+import org.apache.lucene.util.IntsRefBuilder;
+import utils.LuceneTools;
+import word_embedding.VectorCodec;
+import word_embedding.WordEmbeddings;
 
 public class ENWikiIndexStrategy {
 
     public static final String FIELD_TITLE = "title";
     public static final String FIELD_TEXT = "text";
     public static final String FIELD_ID = "id";
+    public static final String FIELD_TEXT_EMBEDDING = "textEmbedding";
 
     private final Logger logger = LogManager.getLogger();
 
+    private final WordEmbeddings wordEmbeddings;
+    private final Analyzer analyzer = new ENWikiAnalyzerBuilder().build();
+
+    public ENWikiIndexStrategy() {
+        this(null);
+    }
+
+    /**
+     * Strategy which additionally stores the mean word vector of the article text.
+     *
+     * @param wordEmbeddings model used for the article embedding, or null to skip the embedding
+     */
+    public ENWikiIndexStrategy(WordEmbeddings wordEmbeddings) {
+        this.wordEmbeddings = wordEmbeddings;
+    }
+
     public Document populateDocument(Document doc, WikiPage page) {
         var title = page.getTitle().trim();
         doc.add(new TextField(FIELD_TITLE, title, Field.Store.YES));
@@ -23,7 +47,20 @@ public class ENWikiIndexStrategy {
         doc.add(new TextField(FIELD_TEXT, text, Field.Store.YES));
         var id = Integer.parseInt(page.getID().trim());
         doc.add(new IntPoint(FIELD_ID, id));
-        logger.info(String.format("[%d]\t:%s", id, title));
+        if (wordEmbeddings != null) {
+            addTextEmbedding(doc, text);
+        }
+        logger.debug("[{}]\t:{}", id, title);
         return doc;
     }
+
+    private void addTextEmbedding(Document doc, String text) {
+        // the same analysis the re-ranker applies to the article text
+        var ids = LuceneTools.tokenizeToIds(analyzer, text, wordEmbeddings, new IntsRefBuilder());
+        var mean = new float[wordEmbeddings.dimension()];
+        if (!wordEmbeddings.getWordVectorsMean(ids, mean)) {
+            return;
+        }
+        doc.add(new BinaryDocValuesField(FIELD_TEXT_EMBEDDING, VectorCodec.encode(mean)));
+    }
 }
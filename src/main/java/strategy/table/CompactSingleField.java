@@ -0,0 +1,58 @@
+package strategy.table;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import utils.LuceneTools;
+
+import java.util.Set;
+
+/**
+ * Same retrieval as {@link SingleField}, with a compact index layout: the table text is indexed but not stored,
+ * only the table name and page title are stored, and the analyzed labels are kept as term ids in doc values
+ * (see {@link LabelTermsCodec}) for the re-ranker. The labels of a searched {@link Document} are therefore
+ * empty, only the document being indexed has them.
+ * <p>
+ * Loading a candidate reads two short stored fields instead of the whole table, and the stored fields
+ * merged with the segments shrink accordingly.
+ */
+public class CompactSingleField extends SingleField {
+
+    static final String NAME = "compactSingleField";
+
+    @Override
+    public void populateDocument(JSONObject tableJsonObject, Document document) {
+        String secondTitle = tableJsonObject.getString("secondTitle");
+        String caption = tableJsonObject.getString("caption");
+        JSONArray title = tableJsonObject.getJSONArray("title");
+        JSONArray data = tableJsonObject.getJSONArray("data");
+        String pgTitle = tableJsonObject.getString("pgTitle");
+
+        // same values in the same order as SingleField, so both layouts score and embed the labels alike
+        addText(document, secondTitle);
+        addText(document, caption);
+        addText(document, pgTitle);
+        for (Object columnTitle : title) {
+            addText(document, (String) columnTitle);
+        }
+        for (Object rowObj : data) {
+            for (Object colObj : (JSONArray) rowObj) {
+                addText(document, (String) colObj);
+            }
+        }
+
+        LabelTermsCodec.addLabels(document,
+                LuceneTools.tokenizeString(LuceneTools.englishAnalyzer(), document.getValues(SINGLE_FIELD_NAME)));
+    }
+
+    @Override
+    public Set<String> getLabelFields() {
+        return Set.of();
+    }
+
+    private static void addText(Document document, String value) {
+        document.add(new Field(SINGLE_FIELD_NAME, value, TextField.TYPE_NOT_STORED));
+    }
+}
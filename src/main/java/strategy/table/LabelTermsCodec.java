@@ -0,0 +1,108 @@
+package strategy.table;
+
+import org.apache.lucene.document.BinaryDocValuesField;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.ByteArrayDataOutput;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.CharsRefBuilder;
+import org.apache.lucene.util.IntsRef;
+import org.apache.lucene.util.IntsRefBuilder;
+import utils.Consts;
+import word_embedding.WordEmbeddings;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Doc values encoding of the analyzed labels of a table, so the labels need neither be stored nor re-analyzed
+ * at query time.
+ * <p>
+ * The distinct terms of a table are added to the {@link Consts#LABEL_TERMS} sorted set doc values, whose
+ * dictionary is shared by all the tables of a segment. Each label is then encoded in the
+ * {@link Consts#LABEL_TERM_IDS} binary doc values as the index of its term among the table's terms:
+ * <pre>
+ * vint number of labels, per label: vint index of the term in the table's terms, in term order
+ * </pre>
+ * The labels keep their order and repetitions, so their mean word vector is the one of the analyzed labels.
+ */
+public class LabelTermsCodec {
+
+    /**
+     * Adds the doc values of the labels to a document being indexed.
+     *
+     * @param document table {@link Document}
+     * @param labels   analyzed labels of the table
+     */
+    public static void addLabels(Document document, List<String> labels) {
+        // sorted in term order, the order of the table's ordinals in the segment dictionary
+        var termIndexes = new TreeMap<BytesRef, Integer>();
+        for (var label : labels) {
+            termIndexes.putIfAbsent(new BytesRef(label), 0);
+        }
+        var termIndex = 0;
+        for (var entry : termIndexes.entrySet()) {
+            entry.setValue(termIndex++);
+            document.add(new SortedSetDocValuesField(Consts.LABEL_TERMS, entry.getKey()));
+        }
+
+        var bytes = new byte[5 + labels.size() * 5];
+        var output = new ByteArrayDataOutput(bytes);
+        try {
+            output.writeVInt(labels.size());
+            for (var label : labels) {
+                output.writeVInt(termIndexes.get(new BytesRef(label)));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e); // writing to an array does not fail
+        }
+        document.add(new BinaryDocValuesField(Consts.LABEL_TERM_IDS, new BytesRef(bytes, 0, output.getPosition())));
+    }
+
+    /**
+     * Reads the ids of the labels known to the embedding model, looking every distinct term of the table up once.
+     *
+     * @param reader         top-level reader the docID belongs to
+     * @param docID          top-level document id
+     * @param wordEmbeddings model assigning the ids
+     * @param ids            reusable builder, cleared before the ids are appended
+     * @return the ids backed by the builder, or null if the document has no label doc values
+     * @throws IOException if an I/O error occurs reading the index
+     */
+    public static IntsRef readIds(IndexReader reader, int docID, WordEmbeddings wordEmbeddings, IntsRefBuilder ids)
+            throws IOException {
+        var leaves = reader.leaves();
+        var leaf = leaves.get(ReaderUtil.subIndex(docID, leaves));
+        var leafDocID = docID - leaf.docBase;
+        var labelTermIds = leaf.reader().getBinaryDocValues(Consts.LABEL_TERM_IDS);
+        if (labelTermIds == null || !labelTermIds.advanceExact(leafDocID)) {
+            return null;
+        }
+        var termWordIds = new IntsRefBuilder();
+        var labelTerms = leaf.reader().getSortedSetDocValues(Consts.LABEL_TERMS);
+        if (labelTerms != null && labelTerms.advanceExact(leafDocID)) {
+            var chars = new CharsRefBuilder();
+            for (long ord = labelTerms.nextOrd(); ord != SortedSetDocValues.NO_MORE_ORDS; ord = labelTerms.nextOrd()) {
+                chars.copyUTF8Bytes(labelTerms.lookupOrd(ord));
+                termWordIds.append(wordEmbeddings.wordId(chars.chars(), 0, chars.length()));
+            }
+        }
+
+        ids.clear();
+        var encoded = labelTermIds.binaryValue();
+        var input = new ByteArrayDataInput(encoded.bytes, encoded.offset, encoded.length);
+        var labels = input.readVInt();
+        for (int i = 0; i < labels; i++) {
+            var wordId = termWordIds.intAt(input.readVInt());
+            if (wordId != WordEmbeddings.UNKNOWN_WORD) {
+                ids.append(wordId);
+            }
+        }
+        return ids.get();
+    }
+}
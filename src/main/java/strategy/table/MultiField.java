@@ -1,40 +1,145 @@
 package strategy.table;
 
+import index.TableAnalyzerBuilder;
+import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
+import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.search.Query;
 import org.json.JSONArray;
 import org.json.JSONObject;
+import utils.Consts;
+import utils.LuceneTools;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+/**
+ * Indexes every part of a table in a field of its own, with only the index options the part needs: the short
+ * texts (caption, second title, column titles and the page title the indexer adds) keep positions for phrase
+ * queries, the cells only keep term frequencies. Queries are matched against all the fields, each weighted by
+ * its boost.
+ * <p>
+ * Nothing but the table name and page title is stored, the labels are kept in doc values
+ * (see {@link LabelTermsCodec}) as with {@link CompactSingleField}.
+ */
 class MultiField implements TableStrategy {
     static final String NAME = "multiField";
 
+    static final String CAPTION = "caption";
+    static final String SECOND_TITLE = "secondTitle";
+    static final String TITLE = "title";
+    static final String DATA = "data";
+
+    /**
+     * Default boost per field, the page title and column titles describe the whole table
+     */
+    static final Map<String, Float> DEFAULT_BOOSTS = Map.of(
+            Consts.PAGE_TITLE, 2.0f,
+            CAPTION, 1.5f,
+            SECOND_TITLE, 1.0f,
+            TITLE, 1.5f,
+            DATA, 1.0f);
+
+    private static final FieldType CELL_TYPE = new FieldType(TextField.TYPE_NOT_STORED);
+
+    static {
+        // cells are matched as bags of terms, phrase queries are not run against them
+        CELL_TYPE.setIndexOptions(IndexOptions.DOCS_AND_FREQS);
+        CELL_TYPE.freeze();
+    }
+
+    private final static Analyzer analyzer = new TableAnalyzerBuilder().build();
+
+    private final String[] fields;
+    private final Map<String, Float> boosts;
+
+    MultiField() {
+        this(Map.of());
+    }
+
+    /**
+     * @param boosts boosts overriding the {@link #DEFAULT_BOOSTS} of some fields
+     */
+    MultiField(Map<String, Float> boosts) {
+        var fieldBoosts = new LinkedHashMap<String, Float>();
+        // label order of SingleField, the fields' values are concatenated in this order
+        for (var field : List.of(SECOND_TITLE, CAPTION, Consts.PAGE_TITLE, TITLE, DATA)) {
+            fieldBoosts.put(field, DEFAULT_BOOSTS.get(field));
+        }
+        boosts.forEach((field, boost) -> {
+            if (!fieldBoosts.containsKey(field)) {
+                throw new IllegalArgumentException("No " + NAME + " field " + field + ", fields are " + fieldBoosts.keySet());
+            }
+            fieldBoosts.put(field, boost);
+        });
+        this.fields = fieldBoosts.keySet().toArray(new String[0]);
+        this.boosts = fieldBoosts;
+    }
+
     @Override
     public void populateDocument(JSONObject tableJsonObject, Document document) {
         JSONArray data = tableJsonObject.getJSONArray("data");
-        Integer numCols = tableJsonObject.getInt("numCols");
-        Integer numHeaderRows = tableJsonObject.getInt("numHeaderRows");
-        Integer numDataRows = tableJsonObject.getInt("numDataRows");
         String secondTitle = tableJsonObject.getString("secondTitle");
         String caption = tableJsonObject.getString("caption");
-        JSONArray numericColumns = tableJsonObject.getJSONArray("numericColumns");
         JSONArray title = tableJsonObject.getJSONArray("title");
-        String pgTitle = tableJsonObject.getString("pgTitle");
-        // TODO implement multi field document population
-        throw new UnsupportedOperationException("This function is not implemented");
+        String pgTitle = tableJsonObject.getString("pgTitle"); // indexed and stored by the indexer
+
+        var labels = new ArrayList<String>();
+        document.add(new Field(SECOND_TITLE, secondTitle, TextField.TYPE_NOT_STORED));
+        labels.add(secondTitle);
+        document.add(new Field(CAPTION, caption, TextField.TYPE_NOT_STORED));
+        labels.add(caption);
+        labels.add(pgTitle);
+        for (Object columnTitle : title) {
+            document.add(new Field(TITLE, (String) columnTitle, TextField.TYPE_NOT_STORED));
+            labels.add((String) columnTitle);
+        }
+        for (Object rowObj : data) {
+            for (Object colObj : (JSONArray) rowObj) {
+                document.add(new Field(DATA, (String) colObj, CELL_TYPE));
+                labels.add((String) colObj);
+            }
+        }
+
+        LabelTermsCodec.addLabels(document,
+                LuceneTools.tokenizeString(LuceneTools.englishAnalyzer(), labels.toArray(new String[0])));
     }
 
     @Override
-    public Query parseQuery(String query) {
-        // TODO implement
-        return null;
+    public Query parseQuery(String query) throws ParseException {
+        // QueryParser is not thread safe, hence one per query
+        return new MultiFieldQueryParser(fields, analyzer, boosts) {
+            @Override
+            protected Query newFieldQuery(Analyzer analyzer, String field, String queryText, boolean quoted)
+                    throws ParseException {
+                // cells have no positions, a quoted query matches their terms anywhere
+                return super.newFieldQuery(analyzer, field, queryText, quoted && !DATA.equals(field));
+            }
+        }.parse(query);
     }
 
+    /**
+     * Labels of a document being indexed, a searched document has none as they are not stored.
+     */
     @Override
     public List<String> getDocumentLabels(Document document) {
-        // TODO implement
-        return null;
+        var values = new ArrayList<String>();
+        for (var field : fields) {
+            values.addAll(List.of(document.getValues(field)));
+        }
+        return LuceneTools.tokenizeString(LuceneTools.englishAnalyzer(), values.toArray(new String[0]));
+    }
+
+    @Override
+    public Set<String> getLabelFields() {
+        return Set.of();
     }
-    // TODO
 }
@@ -2,18 +2,21 @@ package strategy.table;
 
 import index.TableAnalyzerBuilder;
 import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.analysis.en.EnglishAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.queryparser.classic.QueryParser;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.util.IntsRef;
+import org.apache.lucene.util.IntsRefBuilder;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import utils.LuceneTools;
+import word_embedding.WordEmbeddings;
 
 import java.util.List;
+import java.util.Set;
 
 public class SingleField implements TableStrategy {
 
@@ -62,7 +65,18 @@ public class SingleField implements TableStrategy {
     @Override
     public List<String> getDocumentLabels(Document document) {
         var singleField = document.getValues(SINGLE_FIELD_NAME);
-        return LuceneTools.tokenizeString(new EnglishAnalyzer(), singleField);
+        return LuceneTools.tokenizeString(LuceneTools.englishAnalyzer(), singleField);
+    }
+
+    @Override
+    public Set<String> getLabelFields() {
+        return Set.of(SINGLE_FIELD_NAME);
+    }
+
+    @Override
+    public IntsRef getDocumentLabelIds(Document document, WordEmbeddings wordEmbeddings, IntsRefBuilder ids) {
+        var singleField = document.getValues(SINGLE_FIELD_NAME);
+        return LuceneTools.tokenizeToIds(LuceneTools.englishAnalyzer(), singleField, wordEmbeddings, ids);
     }
 
     private void addTitlesToDocument(Document document, JSONArray title) {
@@ -3,9 +3,13 @@ package strategy.table;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.util.IntsRef;
+import org.apache.lucene.util.IntsRefBuilder;
 import org.json.JSONObject;
+import word_embedding.WordEmbeddings;
 
 import java.util.List;
+import java.util.Set;
 
 public interface TableStrategy {
     void populateDocument(JSONObject tableJsonObject, Document document);
@@ -13,4 +17,29 @@ public interface TableStrategy {
     Query parseQuery(String query) throws ParseException;
 
     List<String> getDocumentLabels(Document document);
+
+    /**
+     * @return stored fields {@link #getDocumentLabels(Document)} reads, loaded with a searched document when
+     * the index has no label doc values
+     */
+    Set<String> getLabelFields();
+
+    /**
+     * Ids of the document labels known to the embedding model, see {@link #getDocumentLabels(Document)}.
+     *
+     * @param document       table {@link Document}
+     * @param wordEmbeddings model assigning the ids
+     * @param ids            reusable builder, cleared before the ids are appended
+     * @return the ids, backed by the builder
+     */
+    default IntsRef getDocumentLabelIds(Document document, WordEmbeddings wordEmbeddings, IntsRefBuilder ids) {
+        ids.clear();
+        for (var label : getDocumentLabels(document)) {
+            var id = wordEmbeddings.wordId(label.toCharArray(), 0, label.length());
+            if (id != WordEmbeddings.UNKNOWN_WORD) {
+                ids.append(id);
+            }
+        }
+        return ids.get();
+    }
 }
@@ -1,5 +1,7 @@
 package strategy.table;
 
+import java.util.Map;
+
 /**
  * Strategy factory method for convenient strategy generation.
  */
@@ -8,15 +10,28 @@ public class TableStrategyFactory {
     /**
      * Creates strategy object according to given strategy name.
      *
-     * @param strategyName e.g "singleField", "multiField"
+     * @param strategyName e.g "singleField", "compactSingleField", "multiField"
      * @return newly created {@link TableStrategy} corresponding to strategyName
      */
     public static TableStrategy createStrategy(String strategyName) {
+        return createStrategy(strategyName, Map.of());
+    }
+
+    /**
+     * Creates strategy object according to given strategy name.
+     *
+     * @param strategyName e.g "singleField", "compactSingleField", "multiField"
+     * @param fieldBoosts  query boost per field of the "multiField" strategy, overriding its defaults
+     * @return newly created {@link TableStrategy} corresponding to strategyName
+     */
+    public static TableStrategy createStrategy(String strategyName, Map<String, Float> fieldBoosts) {
         switch (strategyName) {
             case SingleField.NAME:
                 return new SingleField();
+            case CompactSingleField.NAME:
+                return new CompactSingleField();
             case MultiField.NAME:
-                return new MultiField();
+                return new MultiField(fieldBoosts);
             default:
                 throw new IllegalArgumentException("No strategy corresponding to " + strategyName);
         }
@@ -3,6 +3,9 @@ package utils;
 public class Consts {
     public static final String TABLE_NAME = "tableName";
     public static final String PAGE_TITLE = "pgTitle";
+    public static final String LABELS_EMBEDDING = "labelsEmbedding";
+    public static final String LABEL_TERMS = "labelTerms";
+    public static final String LABEL_TERM_IDS = "labelTermIds";
 
     public static final String PROPERTIES_FILENAME = "config.properties";
 }
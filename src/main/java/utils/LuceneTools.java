@@ -2,34 +2,139 @@ package utils;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IntsRef;
+import org.apache.lucene.util.IntsRefBuilder;
+import org.apache.lucene.util.StringHelper;
+import word_embedding.WordEmbeddings;
 
 import java.io.IOException;
-import java.io.StringReader;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
 
 public class LuceneTools {
 
+    // analyzers are thread safe, token streams are reused per thread
+    private static final Analyzer ENGLISH_ANALYZER = new EnglishAnalyzer();
+
+    /**
+     * @return shared {@link EnglishAnalyzer}, the analysis applied to queries, table labels and wiki articles
+     */
+    public static Analyzer englishAnalyzer() {
+        return ENGLISH_ANALYZER;
+    }
+
     public static List<String> tokenizeString(Analyzer analyzer, String string) {
         List<String> tokens = new ArrayList<>();
-        try (TokenStream tokenStream = analyzer.tokenStream(null, new StringReader(string))) {
+        tokenizeString(analyzer, string, tokens);
+        return tokens;
+    }
+
+    public static List<String> tokenizeString(Analyzer analyzer, String[] values) {
+        var tokens = new ArrayList<String>();
+        for (String value : values) {
+            tokenizeString(analyzer, value, tokens);
+        }
+        return tokens;
+    }
+
+    private static void tokenizeString(Analyzer analyzer, String string, List<String> tokens) {
+        try (TokenStream tokenStream = analyzer.tokenStream(null, string)) {
+            var termAttribute = tokenStream.addAttribute(CharTermAttribute.class);
             tokenStream.reset();  // required
             while (tokenStream.incrementToken()) {
-                tokens.add(tokenStream.getAttribute(CharTermAttribute.class).toString());
+                tokens.add(termAttribute.toString());
             }
+            tokenStream.end();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
-        return tokens;
     }
 
-    public static List<String> tokenizeString(Analyzer analyzer, String[] values) {
-        var tokens = new LinkedList<String>();
+    /**
+     * Tokenizes straight to the ids of the tokens in the embedding model, without creating token Strings.
+     * Tokens unknown to the model are skipped, as they are when averaging word vectors.
+     *
+     * @param analyzer       analyzer producing the tokens
+     * @param string         text to tokenize
+     * @param wordEmbeddings model assigning the ids
+     * @param ids            reusable builder, cleared before the ids are appended
+     * @return the ids, backed by the builder
+     */
+    public static IntsRef tokenizeToIds(Analyzer analyzer, String string, WordEmbeddings wordEmbeddings,
+                                        IntsRefBuilder ids) {
+        ids.clear();
+        appendIds(analyzer, string, wordEmbeddings, ids);
+        return ids.get();
+    }
+
+    /**
+     * Tokenizes all the values straight to the ids of the tokens in the embedding model,
+     * see {@link #tokenizeToIds(Analyzer, String, WordEmbeddings, IntsRefBuilder)}.
+     */
+    public static IntsRef tokenizeToIds(Analyzer analyzer, String[] values, WordEmbeddings wordEmbeddings,
+                                        IntsRefBuilder ids) {
+        ids.clear();
         for (String value : values) {
-            tokens.addAll(tokenizeString(analyzer, value));
+            appendIds(analyzer, value, wordEmbeddings, ids);
+        }
+        return ids.get();
+    }
+
+    private static void appendIds(Analyzer analyzer, String string, WordEmbeddings wordEmbeddings, IntsRefBuilder ids) {
+        try (TokenStream tokenStream = analyzer.tokenStream(null, string)) {
+            var termAttribute = tokenStream.addAttribute(CharTermAttribute.class);
+            tokenStream.reset();  // required
+            while (tokenStream.incrementToken()) {
+                var id = wordEmbeddings.wordId(termAttribute.buffer(), 0, termAttribute.length());
+                if (id != WordEmbeddings.UNKNOWN_WORD) {
+                    ids.append(id);
+                }
+            }
+            tokenStream.end();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Reads a binary doc value of a top-level document.
+     *
+     * @param reader top-level reader the docID belongs to
+     * @param field  binary doc values field
+     * @param docID  top-level document id
+     * @return a copy of the value or null if the document has no value for the field
+     * @throws IOException if an I/O error occurs reading the index
+     */
+    public static BytesRef readBinaryDocValue(IndexReader reader, String field, int docID) throws IOException {
+        var leaves = reader.leaves();
+        var leaf = leaves.get(ReaderUtil.subIndex(docID, leaves));
+        var docValues = leaf.reader().getBinaryDocValues(field);
+        if (docValues == null || !docValues.advanceExact(docID - leaf.docBase)) {
+            return null;
+        }
+        return BytesRef.deepCopyOf(docValues.binaryValue());
+    }
+
+    /**
+     * Version of the latest commit of an index. Every commit, including re-building the index from scratch,
+     * yields a new version, as the random id of the commit is part of it.
+     *
+     * @param indexDirectory location of the index directory
+     * @return version of the latest commit
+     * @throws IOException if an I/O error occurs reading the commit
+     */
+    public static String indexVersion(Path indexDirectory) throws IOException {
+        try (var directory = FSDirectory.open(indexDirectory)) {
+            var segmentInfos = SegmentInfos.readLatestCommit(directory);
+            return StringHelper.idToString(segmentInfos.getId()) + "-" + segmentInfos.getVersion();
         }
-        return tokens;
     }
 }
@@ -5,12 +5,17 @@ import org.apache.logging.log4j.Logger;
 import strategy.enwiki.ENWikiIndexStrategy;
 import strategy.table.TableStrategy;
 import strategy.table.TableStrategyFactory;
+import word_embedding.VectorEncoding;
+import word_embedding.WordEmbeddings;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Properties;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
@@ -74,18 +79,172 @@ public class PropertyUtils {
         return getWorkDirectory().resolve(properties.getProperty("word_vectors_model_file"));
     }
 
+    public Path getWordVectorsMappedFile() {
+        var defaultMappedFile = properties.getProperty("word_vectors_model_file") + ".mapped";
+        return getWorkDirectory().resolve(properties.getProperty("word_vectors_mapped_file", defaultMappedFile));
+    }
+
+    public Path getWordVectorsPrunedFile() {
+        var defaultPrunedFile = getWordVectorsMappedFile() + ".pruned";
+        return getWorkDirectory().resolve(properties.getProperty("word_vectors_pruned_file", defaultPrunedFile));
+    }
+
+    public VectorEncoding getWordVectorsEncoding() {
+        return VectorEncoding.fromName(properties.getProperty("word_vectors_encoding", "float32"));
+    }
+
+    public Path getHnswFile() {
+        var defaultHnswFile = Paths.get(properties.getProperty("tables_index_directory")) + ".hnsw";
+        return getWorkDirectory().resolve(properties.getProperty("hnsw_file", defaultHnswFile));
+    }
+
+    public int getHnswM() {
+        return Integer.parseInt(properties.getProperty("hnsw_m", "16"));
+    }
+
+    public int getHnswEfConstruction() {
+        return Integer.parseInt(properties.getProperty("hnsw_ef_construction", "100"));
+    }
+
+    public int getHnswEfSearch() {
+        return Integer.parseInt(properties.getProperty("hnsw_ef_search", "100"));
+    }
+
+    public int getDenseCandidates() {
+        return Integer.parseInt(properties.getProperty("dense_candidates", "0"));
+    }
+
     public Path getTRECOutputDirectory() {
         return getWorkDirectory().resolve(properties.getProperty("trec_output_directory"));
     }
 
+    public Path getQrelsFile() {
+        var qrels = properties.getProperty("qrels");
+        return qrels == null || qrels.isBlank() ? null : getWorkDirectory().resolve(qrels);
+    }
+
+    public Path getFeatureCacheFile() {
+        var featureCache = properties.getProperty("feature_cache_file");
+        return featureCache == null || featureCache.isBlank() ? null : getWorkDirectory().resolve(featureCache);
+    }
+
+    public int[] getEvaluationCutoffs() {
+        return parseInts(properties.getProperty("evaluation_cutoffs", "5,10,20"));
+    }
+
+    public double[] getSweepGammas() {
+        return Arrays.stream(properties.getProperty("sweep_gammas", "0.2").split(","))
+                .map(String::trim)
+                .mapToDouble(Double::parseDouble)
+                .toArray();
+    }
+
+    public int[] getSweepDepths() {
+        return parseInts(properties.getProperty("sweep_depths", "200"));
+    }
+
+    public int[] getSweepCutoffs() {
+        return parseInts(properties.getProperty("sweep_cutoffs", "20"));
+    }
+
+    public int[] getSweepCascadeCandidates() {
+        return parseInts(properties.getProperty("sweep_cascade_candidates", "0"));
+    }
+
+    private static int[] parseInts(String commaSeparated) {
+        return Arrays.stream(commaSeparated.split(","))
+                .map(String::trim)
+                .mapToInt(Integer::parseInt)
+                .toArray();
+    }
+
+    public int getEnWikiCacheSize() {
+        return Integer.parseInt(properties.getProperty("enwiki_cache_size", "10000"));
+    }
+
+    public boolean isTablesIndexEmbeddings() {
+        return Boolean.parseBoolean(properties.getProperty("tables_index_embeddings", "false"));
+    }
+
+    public int getRerankThreads() {
+        return Integer.parseInt(properties.getProperty("rerank_threads", "1"));
+    }
+
+    public int getRerankCascadeCandidates() {
+        return Integer.parseInt(properties.getProperty("rerank_cascade_candidates", "0"));
+    }
+
+    public int getRerankFirstStageCandidates() {
+        return Integer.parseInt(properties.getProperty("rerank_first_stage_candidates", "200"));
+    }
+
+    public int getRerankTopCandidates() {
+        return Integer.parseInt(properties.getProperty("rerank_top_candidates", "20"));
+    }
+
+    public int getBatchThreads() {
+        return Integer.parseInt(properties.getProperty("batch_threads", "1"));
+    }
+
+    public int getServerPort() {
+        return Integer.parseInt(properties.getProperty("server_port", "8080"));
+    }
+
+    public int getServerThreads() {
+        return Integer.parseInt(properties.getProperty("server_threads", "4"));
+    }
+
+    public int getIndexThreads() {
+        return Integer.parseInt(properties.getProperty("index_threads", "1"));
+    }
+
+    public double getIndexRamBufferSizeMB() {
+        return Double.parseDouble(properties.getProperty("index_ram_buffer_mb", "16"));
+    }
+
     public TableStrategy getTableStrategy() {
-        return TableStrategyFactory.createStrategy(properties.getProperty("table_strategy"));
+        return TableStrategyFactory.createStrategy(properties.getProperty("table_strategy"), getMultiFieldBoosts());
+    }
+
+    /**
+     * @return boost per field of the multiField strategy, from comma separated field:boost pairs
+     */
+    public Map<String, Float> getMultiFieldBoosts() {
+        var boosts = new LinkedHashMap<String, Float>();
+        var property = properties.getProperty("multi_field_boosts", "");
+        if (property.isBlank()) {
+            return boosts;
+        }
+        for (var pair : property.split(",")) {
+            var fieldBoost = pair.split(":");
+            if (fieldBoost.length != 2) {
+                throw new IllegalArgumentException("multi_field_boosts expects field:boost pairs, found '" + pair + "'");
+            }
+            boosts.put(fieldBoost[0].trim(), Float.parseFloat(fieldBoost[1].trim()));
+        }
+        return boosts;
     }
 
     public ENWikiIndexStrategy getENWikiIndexStrategy() {
         return new ENWikiIndexStrategy();
     }
 
+    public ENWikiIndexStrategy getENWikiIndexStrategy(WordEmbeddings wordEmbeddings) {
+        return new ENWikiIndexStrategy(wordEmbeddings);
+    }
+
+    public int getEnWikiIndexThreads() {
+        return Integer.parseInt(properties.getProperty("enwiki_index_threads", "1"));
+    }
+
+    public int getEnWikiQueueCapacity() {
+        return Integer.parseInt(properties.getProperty("enwiki_queue_capacity", "1024"));
+    }
+
+    public boolean isEnWikiIndexEmbeddings() {
+        return Boolean.parseBoolean(properties.getProperty("enwiki_index_embeddings", "false"));
+    }
+
     public Stream<QueryWithId> getQueriesStream() throws IOException, QueryParseException {
         var reader = Files.newBufferedReader(getQueriesFile());
         return reader
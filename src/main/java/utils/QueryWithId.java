@@ -6,14 +6,20 @@ public class QueryWithId {
 
     private final long id;
     private final String queryText;
+    private final boolean stableId;
 
     public QueryWithId(long id, String queryText) {
-        this.id = id;
-        this.queryText = queryText;
+        this(id, queryText, true);
     }
 
     public QueryWithId(String queryText) {
-        this(new Random().nextLong(), queryText);
+        this(new Random().nextLong(), queryText, false);
+    }
+
+    private QueryWithId(long id, String queryText, boolean stableId) {
+        this.id = id;
+        this.queryText = queryText;
+        this.stableId = stableId;
     }
 
     public long getId() {
@@ -24,6 +30,13 @@ public class QueryWithId {
         return queryText;
     }
 
+    /**
+     * @return true if the id identifies the query across runs, false if it was generated for this run
+     */
+    public boolean isStableId() {
+        return stableId;
+    }
+
     @Override
     public String toString() {
         return "QueryWithId{" +
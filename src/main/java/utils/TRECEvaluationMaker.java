@@ -11,46 +11,21 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.Map;
 
 public class TRECEvaluationMaker {
 
     public static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd-HH-mm-ss");
 
-    private static final String TEAM_NAME = "vvolo01";
-
     public void createReport(Path reportDirectoryPath, Map<QueryWithId, Map<String, Double>> queriesResults) throws IOException {
-        var listOfRows = new ArrayList<ArrayList<TRECEvaluationRow>>();
-        var size = 0;
-        for (var entry : queriesResults.entrySet()) {
-            var queryWithId = entry.getKey();
-            var resultsForQuery = entry.getValue();
-            var rowsForQuery = new ArrayList<TRECEvaluationRow>(resultsForQuery.size());
-            for (var scoresForTable : resultsForQuery.entrySet()) {
-                var tableName = scoresForTable.getKey();
-                var score = scoresForTable.getValue();
-                var row = new TRECEvaluationRow(queryWithId.getId(), tableName, score, TEAM_NAME);
-                rowsForQuery.add(row);
-                rowsForQuery.sort((o1, o2) -> Double.compare(o2.score, o1.score));
-                int bound = rowsForQuery.size();
-                for (int i = 0; i < bound; i++) {
-                    rowsForQuery.get(i).rank = i + 1;
-                }
+        var queries = new ArrayList<>(queriesResults.keySet());
+        queries.sort(Comparator.comparingLong(QueryWithId::getId));
+        try (var runWriter = new TRECRunWriter(reportDirectoryPath, null)) {
+            for (var queryWithId : queries) {
+                runWriter.write(queryWithId, queriesResults.get(queryWithId));
             }
-            listOfRows.add(rowsForQuery);
-            size += rowsForQuery.size();
         }
-        var rows = new ArrayList<TRECEvaluationRow>(size);
-        listOfRows.forEach(rows::addAll);
-        rows.sort((o1, o2) -> {
-            var queryIdCompare = Long.compare(o1.queryId, o2.queryId);
-            if (queryIdCompare != 0) {
-                return queryIdCompare;
-            } else {
-                return Integer.compare(o1.rank, o2.rank);
-            }
-        });
-        createReport(reportDirectoryPath, rows);
     }
 
     public void createReport(Path reportDirectoryPath, Collection<TRECEvaluationRow> rows) throws IOException {
@@ -58,11 +33,12 @@ public class TRECEvaluationMaker {
         var filename = timeStamp + ".txt";
         var reportPath = reportDirectoryPath.resolve(filename);
         Files.createDirectories(reportDirectoryPath);
-        Files.createFile(reportPath);
-        for (TRECEvaluationRow row : rows) {
-            // <query id><TAB>Q0<TAB><table id><TAB><rank><TAB><score><TAB><team name>
-            var line = row.toString() + "\n";
-            Files.writeString(reportPath, line, StandardOpenOption.APPEND);
+        try (var writer = Files.newBufferedWriter(reportPath, StandardOpenOption.CREATE_NEW)) {
+            for (TRECEvaluationRow row : rows) {
+                // <query id><TAB>Q0<TAB><table id><TAB><rank><TAB><score><TAB><team name>
+                writer.write(row.toString());
+                writer.write('\n');
+            }
         }
         Files.copy(reportPath, reportDirectoryPath.resolve("top.txt"), StandardCopyOption.REPLACE_EXISTING);
     }
@@ -0,0 +1,181 @@
+package utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Evaluates ranked runs against TREC relevance judgments, computing the same
+ * MAP, NDCG@k and P@k as trec_eval without an external step.
+ * <p>
+ * Like trec_eval, only the queries that are both in the run and in the qrels are averaged, and the tables of a
+ * query are ranked by their scores, ignoring the ranks of the run, with tied scores in descending table id order.
+ */
+public class TRECEvaluator {
+
+    // trec_eval sorts by score, then by docno in descending strcmp order
+    private static final Comparator<Map.Entry<String, Double>> TREC_EVAL_ORDER =
+            Map.Entry.<String, Double>comparingByValue()
+                    .thenComparing(Map.Entry.comparingByKey())
+                    .reversed();
+
+    private final Map<Long, Map<String, Integer>> qrels;
+    private final int[] cutoffs;
+
+    private int evaluatedQueries;
+    private double sumAveragePrecision;
+    private final double[] sumNdcg;
+    private final double[] sumPrecision;
+
+    /**
+     * Evaluator constructor.
+     *
+     * @param qrels   relevance grade per table id per query id
+     * @param cutoffs ranks k at which NDCG@k and P@k are computed
+     */
+    public TRECEvaluator(Map<Long, Map<String, Integer>> qrels, int[] cutoffs) {
+        this.qrels = qrels;
+        this.cutoffs = cutoffs.clone();
+        this.sumNdcg = new double[cutoffs.length];
+        this.sumPrecision = new double[cutoffs.length];
+    }
+
+    /**
+     * Reads a qrels file.
+     *
+     * @param qrelsPath path to the qrels file
+     * @param cutoffs   ranks k at which NDCG@k and P@k are computed
+     * @return evaluator over the judgments
+     * @throws IOException if an I/O error occurs reading the file
+     * @see #readQrels(Path)
+     */
+    public static TRECEvaluator fromQrels(Path qrelsPath, int[] cutoffs) throws IOException {
+        return new TRECEvaluator(readQrels(qrelsPath), cutoffs);
+    }
+
+    /**
+     * Reads a qrels file, one {@code <query id> <iteration> <table id> <relevance>} judgment per line.
+     *
+     * @param qrelsPath path to the qrels file
+     * @return relevance grade per table id per query id
+     * @throws IOException if an I/O error occurs reading the file
+     */
+    public static Map<Long, Map<String, Integer>> readQrels(Path qrelsPath) throws IOException {
+        var qrels = new HashMap<Long, Map<String, Integer>>();
+        try (var lines = Files.lines(qrelsPath)) {
+            lines.map(String::trim)
+                    .filter(line -> !line.isEmpty())
+                    .forEach(line -> {
+                        var columns = line.split("\\s+");
+                        if (columns.length < 4) {
+                            throw new IllegalArgumentException("Malformed qrels line '" + line + "' in " + qrelsPath);
+                        }
+                        qrels.computeIfAbsent(Long.parseLong(columns[0]), id -> new HashMap<>())
+                                .put(columns[2], Integer.parseInt(columns[3]));
+                    });
+        }
+        return qrels;
+    }
+
+    /**
+     * Adds a query to the averages, queries without judgments are ignored.
+     *
+     * @param queryId query id
+     * @param results score per table id
+     */
+    public void evaluate(long queryId, Map<String, Double> results) {
+        var judgments = qrels.get(queryId);
+        if (judgments == null) {
+            return;
+        }
+        var ranked = new ArrayList<>(results.entrySet());
+        ranked.sort(TREC_EVAL_ORDER);
+        var tableIds = new ArrayList<String>(ranked.size());
+        ranked.forEach(entry -> tableIds.add(entry.getKey()));
+        evaluatedQueries++;
+        sumAveragePrecision += averagePrecision(judgments, tableIds);
+        for (int i = 0; i < cutoffs.length; i++) {
+            sumNdcg[i] += ndcg(judgments, tableIds, cutoffs[i]);
+            sumPrecision[i] += precision(judgments, tableIds, cutoffs[i]);
+        }
+    }
+
+    /**
+     * @return number of queries added to the averages
+     */
+    public int getEvaluatedQueries() {
+        return evaluatedQueries;
+    }
+
+    /**
+     * @return metric name to its mean over the evaluated queries, MAP first then NDCG and P by cutoff
+     */
+    public Map<String, Double> summary() {
+        var summary = new LinkedHashMap<String, Double>();
+        var queries = Math.max(1, evaluatedQueries);
+        summary.put("map", sumAveragePrecision / queries);
+        for (int i = 0; i < cutoffs.length; i++) {
+            summary.put("ndcg_cut_" + cutoffs[i], sumNdcg[i] / queries);
+        }
+        for (int i = 0; i < cutoffs.length; i++) {
+            summary.put("P_" + cutoffs[i], sumPrecision[i] / queries);
+        }
+        return summary;
+    }
+
+    private static double averagePrecision(Map<String, Integer> judgments, List<String> tableIds) {
+        var relevant = judgments.values().stream().filter(grade -> grade > 0).count();
+        if (relevant == 0) {
+            return 0;
+        }
+        var retrievedRelevant = 0;
+        var sumPrecision = 0.0;
+        for (int i = 0; i < tableIds.size(); i++) {
+            if (judgments.getOrDefault(tableIds.get(i), 0) > 0) {
+                retrievedRelevant++;
+                sumPrecision += (double) retrievedRelevant / (i + 1);
+            }
+        }
+        return sumPrecision / relevant;
+    }
+
+    private static double ndcg(Map<String, Integer> judgments, List<String> tableIds, int k) {
+        var dcg = 0.0;
+        var bound = Math.min(k, tableIds.size());
+        for (int i = 0; i < bound; i++) {
+            dcg += gain(judgments.getOrDefault(tableIds.get(i), 0), i);
+        }
+        var idealGrades = judgments.values().stream()
+                .filter(grade -> grade > 0)
+                .sorted((o1, o2) -> Integer.compare(o2, o1))
+                .limit(k)
+                .mapToInt(Integer::intValue)
+                .toArray();
+        var idcg = 0.0;
+        for (int i = 0; i < idealGrades.length; i++) {
+            idcg += gain(idealGrades[i], i);
+        }
+        return idcg == 0 ? 0 : dcg / idcg;
+    }
+
+    private static double gain(int grade, int rankIndex) {
+        return grade <= 0 ? 0 : grade / (Math.log(rankIndex + 2) / Math.log(2));
+    }
+
+    private static double precision(Map<String, Integer> judgments, List<String> tableIds, int k) {
+        var bound = Math.min(k, tableIds.size());
+        var relevant = 0;
+        for (int i = 0; i < bound; i++) {
+            if (judgments.getOrDefault(tableIds.get(i), 0) > 0) {
+                relevant++;
+            }
+        }
+        return (double) relevant / k;
+    }
+}
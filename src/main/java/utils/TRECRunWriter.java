@@ -0,0 +1,121 @@
+package utils;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Map;
+
+/**
+ * Streams a TREC run file, one query at a time, through a single buffered writer.
+ * <p>
+ * Every query is ranked once when it is written, ties broken by table id so the run does not
+ * depend on the results map order. When an {@link TRECEvaluator} is given the written results are
+ * also evaluated, in the evaluator's own tie order. A time stamped run marked {@link #finish() finished} is
+ * copied to {@code top.txt} once closed, so a run that failed partway never replaces it.
+ */
+public class TRECRunWriter implements Closeable {
+
+    private static final String TEAM_NAME = "vvolo01";
+
+    private static final Comparator<Map.Entry<String, Double>> RANK_ORDER =
+            Map.Entry.<String, Double>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey());
+
+    private final Path reportDirectoryPath;
+    private final Path reportPath;
+    private final BufferedWriter writer;
+    private final TRECEvaluator evaluator;
+    private final boolean copyToTop;
+    private boolean finished;
+
+    /**
+     * Run writer constructor, creates a new time stamped run file under the directory.
+     *
+     * @param reportDirectoryPath directory of the run files, created if it does not exist
+     * @param evaluator           evaluator of the written queries, or null to only write the run
+     * @throws IOException if an I/O error occurs creating the run file or it already exists
+     */
+    public TRECRunWriter(Path reportDirectoryPath, TRECEvaluator evaluator) throws IOException {
+        this(reportDirectoryPath, TRECEvaluationMaker.DATE_TIME_FORMATTER.format(LocalDateTime.now()), evaluator, true);
+    }
+
+    /**
+     * Run writer constructor.
+     *
+     * @param reportDirectoryPath directory of the run files, created if it does not exist
+     * @param runName             name of the run file, without the extension
+     * @param evaluator           evaluator of the written queries, or null to only write the run
+     * @throws IOException if an I/O error occurs creating the run file or it already exists
+     */
+    public TRECRunWriter(Path reportDirectoryPath, String runName, TRECEvaluator evaluator) throws IOException {
+        this(reportDirectoryPath, runName, evaluator, false);
+    }
+
+    private TRECRunWriter(Path reportDirectoryPath, String runName, TRECEvaluator evaluator, boolean copyToTop)
+            throws IOException {
+        this.copyToTop = copyToTop;
+        this.reportDirectoryPath = reportDirectoryPath;
+        this.reportPath = reportDirectoryPath.resolve(runName + ".txt");
+        this.evaluator = evaluator;
+        Files.createDirectories(reportDirectoryPath);
+        this.writer = Files.newBufferedWriter(reportPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Ranks and writes the results of one query.
+     *
+     * @param queryWithId query
+     * @param results     score per table name
+     * @throws IOException if an I/O error occurs writing the run
+     */
+    public void write(QueryWithId queryWithId, Map<String, Double> results) throws IOException {
+        var ranked = new ArrayList<>(results.entrySet());
+        ranked.sort(RANK_ORDER);
+        for (int i = 0; i < ranked.size(); i++) {
+            var entry = ranked.get(i);
+            // <query id><TAB>Q0<TAB><table id><TAB><rank><TAB><score><TAB><team name>
+            writer.write(new TRECEvaluationMaker.TRECEvaluationRow(
+                    queryWithId.getId(), entry.getKey(), i + 1, entry.getValue(), TEAM_NAME).toString());
+            writer.write('\n');
+        }
+        if (evaluator != null) {
+            evaluator.evaluate(queryWithId.getId(), results);
+        }
+    }
+
+    /**
+     * Marks the run as complete, all its queries were written.
+     */
+    public void finish() {
+        finished = true;
+    }
+
+    /**
+     * @return path of the run file
+     */
+    public Path getReportPath() {
+        return reportPath;
+    }
+
+    /**
+     * @return evaluator of the written queries, or null
+     */
+    public TRECEvaluator getEvaluator() {
+        return evaluator;
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+        if (!copyToTop || !finished) {
+            return;
+        }
+        Files.copy(reportPath, reportDirectoryPath.resolve("top.txt"), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
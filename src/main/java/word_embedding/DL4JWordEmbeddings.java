@@ -0,0 +1,67 @@
+package word_embedding;
+
+import org.apache.lucene.util.IntsRef;
+import org.deeplearning4j.models.embeddings.wordvectors.WordVectors;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * {@link WordEmbeddings} backed by a DL4J {@link WordVectors} model loaded on the heap.
+ */
+public class DL4JWordEmbeddings implements WordEmbeddings {
+
+    private final WordVectors wordVectors;
+    private final int dimension;
+
+    public DL4JWordEmbeddings(WordVectors wordVectors) {
+        this.wordVectors = wordVectors;
+        this.dimension = wordVectors.lookupTable().layerSize();
+    }
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    @Override
+    public boolean hasWord(String word) {
+        return wordVectors.hasWord(word);
+    }
+
+    @Override
+    public float[] getWordVector(String word) {
+        if (!wordVectors.hasWord(word)) {
+            return null;
+        }
+        return wordVectors.getWordVectorMatrix(word).toFloatVector();
+    }
+
+    @Override
+    public int wordId(char[] chars, int offset, int length) {
+        var word = new String(chars, offset, length);
+        return wordVectors.hasWord(word) ? wordVectors.indexOf(word) : UNKNOWN_WORD;
+    }
+
+    @Override
+    public boolean getWordVectorsMean(IntsRef ids, float[] mean) {
+        Arrays.fill(mean, 0f);
+        if (ids.length == 0) {
+            return false;
+        }
+        for (int i = ids.offset; i < ids.offset + ids.length; i++) {
+            VectorMath.add(mean, getWordVector(wordVectors.vocab().wordAtIndex(ids.ints[i])));
+        }
+        VectorMath.scale(mean, 1f / ids.length);
+        return true;
+    }
+
+    /**
+     * @return all the words of the model
+     */
+    @SuppressWarnings("unchecked")
+    public Collection<String> words() {
+        return new ArrayList<>((Collection<String>) wordVectors.vocab().words());
+    }
+}
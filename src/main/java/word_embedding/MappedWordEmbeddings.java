@@ -0,0 +1,297 @@
+package word_embedding;
+
+import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.IntsRef;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * {@link WordEmbeddings} read from memory-mapped files, written by {@link MappedWordEmbeddingsWriter}.
+ * <p>
+ * Nothing is loaded on the heap: opening the model only maps the files, vectors are paged in by the OS on
+ * first access and the page cache is shared between processes using the same model.
+ * <p>
+ * A model at base path {@code model} consists of two files:
+ * <ul>
+ * <li>{@code model.vocab} - header (magic, version, rows, slots), an open addressing hash table of
+ * {@code slots} row numbers (-1 marks an empty slot), {@code rows + 1} offsets into the word pool and the
+ * word pool of UTF-8 encoded words</li>
+ * <li>{@code model.vectors} - header (magic, version, rows, dimension) followed by the {@code rows x dimension}
+ * matrix, row per word, encoded as identified by the magic, see {@link VectorEncoding}</li>
+ * </ul>
+ * All values are little-endian. Means and similarities are computed directly on the encoded rows.
+ */
+public class MappedWordEmbeddings implements WordEmbeddings {
+
+    static final String VOCAB_SUFFIX = ".vocab";
+    static final String VECTORS_SUFFIX = ".vectors";
+    static final int VOCAB_MAGIC = 0x434f5657; // "WVOC"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 4 * Integer.BYTES;
+    static final int EMPTY_SLOT = -1;
+
+    private final int rows;
+    private final int dimension;
+    private final int slotMask;
+    private final ByteBuffer vocab;
+    private final int offsetsStart;
+    private final int poolStart;
+    private final VectorEncoding encoding;
+    private final int rowBytes;
+    private final int rowsPerChunk;
+    private final ByteBuffer[] chunks;
+    private final ThreadLocal<BytesRefBuilder> utf8Buffers = ThreadLocal.withInitial(BytesRefBuilder::new);
+
+    private MappedWordEmbeddings(ByteBuffer vocab, VectorEncoding encoding, ByteBuffer[] chunks, int rows,
+                                 int dimension, int slots, int rowsPerChunk) {
+        this.vocab = vocab;
+        this.encoding = encoding;
+        this.rowBytes = encoding.rowBytes(dimension);
+        this.chunks = chunks;
+        this.rows = rows;
+        this.dimension = dimension;
+        this.slotMask = slots - 1;
+        this.offsetsStart = HEADER_BYTES + slots * Integer.BYTES;
+        this.poolStart = offsetsStart + (rows + 1) * Integer.BYTES;
+        this.rowsPerChunk = rowsPerChunk;
+    }
+
+    /**
+     * Maps the model files.
+     *
+     * @param basePath model path without the file suffixes
+     * @return opened model
+     * @throws IOException if an I/O error occurs mapping the files or they are not model files
+     */
+    public static MappedWordEmbeddings open(Path basePath) throws IOException {
+        ByteBuffer vocab;
+        try (var channel = FileChannel.open(vocabPath(basePath), StandardOpenOption.READ)) {
+            vocab = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        checkHeader(vocab, VOCAB_MAGIC, vocabPath(basePath));
+        var rows = vocab.getInt(8);
+        var slots = vocab.getInt(12);
+
+        try (var channel = FileChannel.open(vectorsPath(basePath), StandardOpenOption.READ)) {
+            var header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            var encoding = VectorEncoding.fromMagic(header.getInt(0));
+            if (encoding == null) {
+                throw new IOException(vectorsPath(basePath) + " is not a word vectors file");
+            }
+            checkHeader(header, encoding.magic(), vectorsPath(basePath));
+            if (header.getInt(8) != rows) {
+                throw new IOException("Vocabulary and vectors of " + basePath + " do not match");
+            }
+            var dimension = header.getInt(12);
+            // a single mapping is limited to 2GB, the matrix is mapped in chunks of whole rows
+            long rowBytes = encoding.rowBytes(dimension);
+            var rowsPerChunk = (int) Math.min(Math.max(rows, 1), Integer.MAX_VALUE / rowBytes);
+            var chunks = new ByteBuffer[(rows + rowsPerChunk - 1) / rowsPerChunk];
+            for (int i = 0; i < chunks.length; i++) {
+                var firstRow = (long) i * rowsPerChunk;
+                var chunkRows = Math.min(rowsPerChunk, rows - firstRow);
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + firstRow * rowBytes, chunkRows * rowBytes)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+            }
+            return new MappedWordEmbeddings(vocab, encoding, chunks, rows, dimension, slots, rowsPerChunk);
+        }
+    }
+
+    /**
+     * @param basePath model path without the file suffixes
+     * @return true if both model files exist
+     */
+    public static boolean exists(Path basePath) {
+        return vocabPath(basePath).toFile().isFile() && vectorsPath(basePath).toFile().isFile();
+    }
+
+    static Path vocabPath(Path basePath) {
+        return Paths.get(basePath.toString() + VOCAB_SUFFIX);
+    }
+
+    static Path vectorsPath(Path basePath) {
+        return Paths.get(basePath.toString() + VECTORS_SUFFIX);
+    }
+
+    private static void checkHeader(ByteBuffer buffer, int magic, Path path) throws IOException {
+        if (buffer.getInt(0) != magic || buffer.getInt(4) != VERSION) {
+            throw new IOException(path + " is not a word embeddings file of version " + VERSION);
+        }
+    }
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * @return encoding of the rows
+     */
+    public VectorEncoding encoding() {
+        return encoding;
+    }
+
+    /**
+     * @return number of words in the model
+     */
+    public int size() {
+        return rows;
+    }
+
+    @Override
+    public boolean hasWord(String word) {
+        return rowOf(word) != EMPTY_SLOT;
+    }
+
+    @Override
+    public float[] getWordVector(String word) {
+        var row = rowOf(word);
+        if (row == EMPTY_SLOT) {
+            return null;
+        }
+        var vector = new float[dimension];
+        addRow(row, vector);
+        return vector;
+    }
+
+    @Override
+    public boolean getWordVectorsMean(Collection<String> words, float[] mean) {
+        Arrays.fill(mean, 0f);
+        var count = 0;
+        for (var word : words) {
+            var row = rowOf(word);
+            if (row != EMPTY_SLOT) {
+                addRow(row, mean);
+                count++;
+            }
+        }
+        if (count == 0) {
+            return false;
+        }
+        VectorMath.scale(mean, 1f / count);
+        return true;
+    }
+
+    @Override
+    public int wordId(char[] chars, int offset, int length) {
+        var utf8 = utf8Buffers.get();
+        utf8.copyChars(chars, offset, length);
+        return rowOf(utf8.bytes(), 0, utf8.length());
+    }
+
+    @Override
+    public boolean getWordVectorsMean(IntsRef ids, float[] mean) {
+        Arrays.fill(mean, 0f);
+        if (ids.length == 0) {
+            return false;
+        }
+        for (int i = ids.offset; i < ids.offset + ids.length; i++) {
+            addRow(ids.ints[i], mean);
+        }
+        VectorMath.scale(mean, 1f / ids.length);
+        return true;
+    }
+
+    /**
+     * @param word word to look for
+     * @return row of the word in the matrix, or -1 if the word is unknown
+     */
+    public int rowOf(String word) {
+        var bytes = word.getBytes(StandardCharsets.UTF_8);
+        return rowOf(bytes, 0, bytes.length);
+    }
+
+    /**
+     * @param bytes  UTF-8 encoded word
+     * @param offset offset of the word in bytes
+     * @param length length of the word in bytes
+     * @return row of the word in the matrix, or -1 if the word is unknown
+     */
+    public int rowOf(byte[] bytes, int offset, int length) {
+        var slot = hash(bytes, offset, length) & slotMask;
+        while (true) {
+            var row = vocab.getInt(HEADER_BYTES + slot * Integer.BYTES);
+            if (row == EMPTY_SLOT || wordEquals(row, bytes, offset, length)) {
+                return row;
+            }
+            slot = (slot + 1) & slotMask;
+        }
+    }
+
+    /**
+     * @param row row in the matrix
+     * @return the word of the row
+     */
+    public String word(int row) {
+        var start = vocab.getInt(offsetsStart + row * Integer.BYTES);
+        var end = vocab.getInt(offsetsStart + (row + 1) * Integer.BYTES);
+        var bytes = new byte[end - start];
+        vocab.duplicate().position(poolStart + start).get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Adds the vector of the row into the accumulator.
+     *
+     * @param row         row in the matrix
+     * @param accumulator vector of {@link #dimension()} floats
+     */
+    public void addRow(int row, float[] accumulator) {
+        encoding.addRow(chunks[row / rowsPerChunk], (row % rowsPerChunk) * rowBytes, accumulator);
+    }
+
+    /**
+     * Cosine similarity of two words computed on the encoded rows.
+     *
+     * @param row1 row of the first word
+     * @param row2 row of the second word
+     * @return cosine similarity, or 0 if either vector is zero
+     */
+    public double cosineSim(int row1, int row2) {
+        var chunk1 = chunks[row1 / rowsPerChunk];
+        var offset1 = (row1 % rowsPerChunk) * rowBytes;
+        var chunk2 = chunks[row2 / rowsPerChunk];
+        var offset2 = (row2 % rowsPerChunk) * rowBytes;
+        var norm1 = encoding.dot(chunk1, offset1, chunk1, offset1, dimension);
+        var norm2 = encoding.dot(chunk2, offset2, chunk2, offset2, dimension);
+        if (norm1 == 0 || norm2 == 0) {
+            return 0;
+        }
+        return encoding.dot(chunk1, offset1, chunk2, offset2, dimension) / Math.sqrt(norm1 * norm2);
+    }
+
+    private boolean wordEquals(int row, byte[] bytes, int offset, int length) {
+        var start = vocab.getInt(offsetsStart + row * Integer.BYTES);
+        var end = vocab.getInt(offsetsStart + (row + 1) * Integer.BYTES);
+        if (end - start != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (vocab.get(poolStart + start + i) != bytes[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * FNV-1a hash of the UTF-8 bytes of a word.
+     */
+    static int hash(byte[] bytes, int offset, int length) {
+        var hash = 0x811c9dc5;
+        for (int i = offset; i < offset + length; i++) {
+            hash ^= bytes[i] & 0xff;
+            hash *= 0x01000193;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,150 @@
+package word_embedding;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static word_embedding.MappedWordEmbeddings.*;
+
+/**
+ * Writes a model in the format read by {@link MappedWordEmbeddings}.
+ * Vectors are streamed to the matrix file as they are added, the vocabulary is written on {@link #close()}.
+ */
+public class MappedWordEmbeddingsWriter implements Closeable {
+
+    private final Path basePath;
+    private final int dimension;
+    private final VectorEncoding encoding;
+    private final FileChannel vectors;
+    private final ByteBuffer rowBuffer;
+    private final List<byte[]> words = new ArrayList<>();
+    private final Set<String> added = new HashSet<>();
+
+    /**
+     * Writer constructor for a float32 model, creates or truncates the model files.
+     *
+     * @param basePath  model path without the file suffixes
+     * @param dimension number of dimensions of every word vector
+     * @throws IOException if an I/O error occurs creating the files
+     */
+    public MappedWordEmbeddingsWriter(Path basePath, int dimension) throws IOException {
+        this(basePath, dimension, VectorEncoding.FLOAT32);
+    }
+
+    /**
+     * Writer constructor, creates or truncates the model files.
+     *
+     * @param basePath  model path without the file suffixes
+     * @param dimension number of dimensions of every word vector
+     * @param encoding  encoding of the written rows
+     * @throws IOException if an I/O error occurs creating the files
+     */
+    public MappedWordEmbeddingsWriter(Path basePath, int dimension, VectorEncoding encoding) throws IOException {
+        this.basePath = basePath;
+        this.dimension = dimension;
+        this.encoding = encoding;
+        this.vectors = FileChannel.open(vectorsPath(basePath),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        this.rowBuffer = ByteBuffer.allocate(encoding.rowBytes(dimension)).order(ByteOrder.LITTLE_ENDIAN);
+        // header is completed once the number of rows is known
+        vectors.position(HEADER_BYTES);
+    }
+
+    /**
+     * Adds a word, words already added are ignored.
+     *
+     * @param word   the word
+     * @param vector vector of the word
+     * @throws IOException if an I/O error occurs writing the vector
+     */
+    public void add(String word, float[] vector) throws IOException {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Expected a vector of " + dimension + " dimensions for " + word);
+        }
+        if (!added.add(word)) {
+            return;
+        }
+        words.add(word.getBytes(StandardCharsets.UTF_8));
+        rowBuffer.clear();
+        encoding.write(rowBuffer, vector);
+        rowBuffer.flip();
+        writeFully(vectors, rowBuffer);
+    }
+
+    /**
+     * @return number of words added
+     */
+    public int size() {
+        return words.size();
+    }
+
+    /**
+     * Completes the matrix header and writes the vocabulary.
+     *
+     * @throws IOException if an I/O error occurs writing the files
+     */
+    @Override
+    public void close() throws IOException {
+        try (vectors) {
+            vectors.position(0);
+            writeFully(vectors, header(encoding.magic(), words.size(), dimension));
+        }
+        writeVocabulary();
+    }
+
+    private void writeVocabulary() throws IOException {
+        var rows = words.size();
+        var slots = Integer.highestOneBit(Math.max(rows, 1) * 2 - 1) << 1;
+        var slotMask = slots - 1;
+        var table = new int[slots];
+        Arrays.fill(table, EMPTY_SLOT);
+        var offsets = new int[rows + 1];
+        for (int row = 0; row < rows; row++) {
+            var word = words.get(row);
+            var slot = hash(word, 0, word.length) & slotMask;
+            while (table[slot] != EMPTY_SLOT) {
+                slot = (slot + 1) & slotMask;
+            }
+            table[slot] = row;
+            offsets[row + 1] = offsets[row] + word.length;
+        }
+
+        try (var vocab = FileChannel.open(vocabPath(basePath),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFully(vocab, header(VOCAB_MAGIC, rows, slots));
+            writeFully(vocab, ints(table));
+            writeFully(vocab, ints(offsets));
+            for (var word : words) {
+                writeFully(vocab, ByteBuffer.wrap(word));
+            }
+        }
+    }
+
+    private static ByteBuffer header(int magic, int rows, int last) {
+        var header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(magic).putInt(VERSION).putInt(rows).putInt(last).flip();
+        return header;
+    }
+
+    private static ByteBuffer ints(int[] values) {
+        var buffer = ByteBuffer.allocate(values.length * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asIntBuffer().put(values);
+        return buffer;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package word_embedding;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.ops.transforms.Transforms;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Measures how far similarities computed on a quantized model drift from the float32
+ * {@link Transforms#cosineSim} path over the full precision model.
+ * <p>
+ * Two samples are compared: cosine similarities of random word pairs, computed directly on the encoded rows,
+ * and cosine similarities of means of random word groups, which is what the re-ranker computes.
+ */
+public class QuantizationDriftReport {
+
+    public static final int SAMPLES_DEFAULT = 10_000;
+    public static final int GROUP_SIZE_DEFAULT = 20;
+
+    private static final Logger logger = LogManager.getLogger(QuantizationDriftReport.class);
+
+    private final WordEmbeddings reference;
+    private final MappedWordEmbeddings quantized;
+
+    /**
+     * @param reference full precision model
+     * @param quantized quantized model, its words are sampled
+     */
+    public QuantizationDriftReport(WordEmbeddings reference, MappedWordEmbeddings quantized) {
+        this.reference = reference;
+        this.quantized = quantized;
+    }
+
+    /**
+     * Samples the models and logs the drift.
+     *
+     * @param samples   number of word pairs and number of group pairs
+     * @param groupSize number of words averaged per group
+     * @param seed      random seed of the samples
+     */
+    public void report(int samples, int groupSize, long seed) {
+        var random = new Random(seed);
+        var wordDrift = new Drift();
+        var meanDrift = new Drift();
+        for (int i = 0; i < samples; i++) {
+            var row1 = random.nextInt(quantized.size());
+            var row2 = random.nextInt(quantized.size());
+            var expected = referenceCosineSim(
+                    reference.getWordVector(quantized.word(row1)),
+                    reference.getWordVector(quantized.word(row2)));
+            if (!Double.isNaN(expected)) {
+                wordDrift.add(expected, quantized.cosineSim(row1, row2));
+            }
+
+            var group1 = randomWords(random, groupSize);
+            var group2 = randomWords(random, groupSize);
+            expected = referenceCosineSim(reference.getWordVectorsMean(group1), reference.getWordVectorsMean(group2));
+            if (!Double.isNaN(expected)) {
+                meanDrift.add(expected, VectorMath.cosineSim(
+                        quantized.getWordVectorsMean(group1), quantized.getWordVectorsMean(group2)));
+            }
+        }
+
+        var dimension = quantized.dimension();
+        logger.info(String.format("Encoding %s: %d bytes per vector, float32: %d bytes per vector (%.1f%%)",
+                quantized.encoding(), quantized.encoding().rowBytes(dimension),
+                VectorEncoding.FLOAT32.rowBytes(dimension),
+                100.0 * quantized.encoding().rowBytes(dimension) / VectorEncoding.FLOAT32.rowBytes(dimension)));
+        logger.info("Word pairs cosine drift: " + wordDrift);
+        logger.info(String.format("Means of %d words cosine drift: %s", groupSize, meanDrift));
+    }
+
+    /**
+     * @return random words known to both models, so both means average the same words
+     */
+    private ArrayList<String> randomWords(Random random, int groupSize) {
+        var words = new ArrayList<String>(groupSize);
+        for (int i = 0; i < groupSize; i++) {
+            var word = quantized.word(random.nextInt(quantized.size()));
+            if (reference.hasWord(word)) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * @return the float32 cosine similarity, or NaN if a vector is missing from the reference model
+     */
+    private static double referenceCosineSim(float[] vector1, float[] vector2) {
+        if (vector1 == null || vector2 == null) {
+            return Double.NaN;
+        }
+        return Transforms.cosineSim(Nd4j.create(vector1), Nd4j.create(vector2));
+    }
+
+    /**
+     * Absolute drift statistics.
+     */
+    private static class Drift {
+
+        private long count;
+        private double sum;
+        private double sumOfSquares;
+        private double max;
+
+        void add(double expected, double actual) {
+            var drift = Math.abs(expected - actual);
+            count++;
+            sum += drift;
+            sumOfSquares += drift * drift;
+            max = Math.max(max, drift);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("samples=%d mean=%.3e rmse=%.3e max=%.3e",
+                    count, count == 0 ? 0 : sum / count, count == 0 ? 0 : Math.sqrt(sumOfSquares / count), max);
+        }
+    }
+}
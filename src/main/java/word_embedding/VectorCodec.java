@@ -0,0 +1,38 @@
+package word_embedding;
+
+import org.apache.lucene.util.BytesRef;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Binary encoding of embedding vectors stored in doc values.
+ * A vector is encoded as consecutive little-endian float32 values.
+ */
+public class VectorCodec {
+
+    public static BytesRef encode(float[] vector) {
+        var buffer = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(vector);
+        return new BytesRef(buffer.array());
+    }
+
+    public static float[] decode(BytesRef bytesRef) {
+        return decode(bytesRef, new float[bytesRef.length / Float.BYTES]);
+    }
+
+    /**
+     * Decodes into the given vector.
+     *
+     * @param bytesRef encoded vector
+     * @param vector   vector of the encoded length, overwritten with the decoded values
+     * @return the given vector
+     */
+    public static float[] decode(BytesRef bytesRef, float[] vector) {
+        ByteBuffer.wrap(bytesRef.bytes, bytesRef.offset, bytesRef.length)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .asFloatBuffer()
+                .get(vector);
+        return vector;
+    }
+}
@@ -0,0 +1,242 @@
+package word_embedding;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * Encoding of the rows of a memory-mapped model, identified by the magic of the vectors file.
+ * <ul>
+ * <li>{@link #FLOAT32} - 4 bytes per dimension, exact</li>
+ * <li>{@link #FLOAT16} - IEEE 754 half precision, 2 bytes per dimension</li>
+ * <li>{@link #INT8} - a float32 scale per row followed by 1 signed byte per dimension, the value of a
+ * dimension is {@code scale * byte}</li>
+ * </ul>
+ * All values are little-endian, rows are read with absolute gets and are safe to read concurrently.
+ */
+public enum VectorEncoding {
+
+    FLOAT32(0x43455657) { // "WVEC"
+        @Override
+        public int rowBytes(int dimension) {
+            return dimension * Float.BYTES;
+        }
+
+        @Override
+        void write(ByteBuffer out, float[] vector) {
+            for (var value : vector) {
+                out.putFloat(value);
+            }
+        }
+
+        @Override
+        void addRow(ByteBuffer chunk, int offset, float[] accumulator) {
+            for (int i = 0; i < accumulator.length; i++) {
+                accumulator[i] += chunk.getFloat(offset + i * Float.BYTES);
+            }
+        }
+
+        @Override
+        double dot(ByteBuffer chunk1, int offset1, ByteBuffer chunk2, int offset2, int dimension) {
+            double dot = 0;
+            for (int i = 0; i < dimension; i++) {
+                dot += (double) chunk1.getFloat(offset1 + i * Float.BYTES) * chunk2.getFloat(offset2 + i * Float.BYTES);
+            }
+            return dot;
+        }
+    },
+
+    FLOAT16(0x36315657) { // "WV16"
+        @Override
+        public int rowBytes(int dimension) {
+            return dimension * Short.BYTES;
+        }
+
+        @Override
+        void write(ByteBuffer out, float[] vector) {
+            for (var value : vector) {
+                out.putShort(floatToHalf(value));
+            }
+        }
+
+        @Override
+        void addRow(ByteBuffer chunk, int offset, float[] accumulator) {
+            for (int i = 0; i < accumulator.length; i++) {
+                accumulator[i] += halfToFloat(chunk.getShort(offset + i * Short.BYTES));
+            }
+        }
+
+        @Override
+        double dot(ByteBuffer chunk1, int offset1, ByteBuffer chunk2, int offset2, int dimension) {
+            double dot = 0;
+            for (int i = 0; i < dimension; i++) {
+                dot += (double) halfToFloat(chunk1.getShort(offset1 + i * Short.BYTES))
+                        * halfToFloat(chunk2.getShort(offset2 + i * Short.BYTES));
+            }
+            return dot;
+        }
+    },
+
+    INT8(0x38495657) { // "WVI8"
+        @Override
+        public int rowBytes(int dimension) {
+            return Float.BYTES + dimension;
+        }
+
+        @Override
+        void write(ByteBuffer out, float[] vector) {
+            var maxAbs = 0f;
+            for (var value : vector) {
+                maxAbs = Math.max(maxAbs, Math.abs(value));
+            }
+            var scale = maxAbs / Byte.MAX_VALUE;
+            out.putFloat(scale);
+            for (var value : vector) {
+                out.put(scale == 0 ? 0 : (byte) Math.round(value / scale));
+            }
+        }
+
+        @Override
+        void addRow(ByteBuffer chunk, int offset, float[] accumulator) {
+            var scale = chunk.getFloat(offset);
+            var values = offset + Float.BYTES;
+            for (int i = 0; i < accumulator.length; i++) {
+                accumulator[i] += scale * chunk.get(values + i);
+            }
+        }
+
+        @Override
+        double dot(ByteBuffer chunk1, int offset1, ByteBuffer chunk2, int offset2, int dimension) {
+            // 127 * 127 * dimension fits an int for any realistic dimension
+            var dot = 0;
+            var values1 = offset1 + Float.BYTES;
+            var values2 = offset2 + Float.BYTES;
+            for (int i = 0; i < dimension; i++) {
+                dot += chunk1.get(values1 + i) * chunk2.get(values2 + i);
+            }
+            return (double) chunk1.getFloat(offset1) * chunk2.getFloat(offset2) * dot;
+        }
+    };
+
+    private final int magic;
+
+    VectorEncoding(int magic) {
+        this.magic = magic;
+    }
+
+    int magic() {
+        return magic;
+    }
+
+    /**
+     * @param dimension number of dimensions of every word vector
+     * @return size of an encoded row in bytes
+     */
+    public abstract int rowBytes(int dimension);
+
+    /**
+     * Encodes the vector at the buffer position.
+     */
+    abstract void write(ByteBuffer out, float[] vector);
+
+    /**
+     * Decodes the row at the offset and adds it into the accumulator.
+     */
+    abstract void addRow(ByteBuffer chunk, int offset, float[] accumulator);
+
+    /**
+     * Dot product of two encoded rows.
+     */
+    abstract double dot(ByteBuffer chunk1, int offset1, ByteBuffer chunk2, int offset2, int dimension);
+
+    static VectorEncoding fromMagic(int magic) {
+        for (var encoding : values()) {
+            if (encoding.magic == magic) {
+                return encoding;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads the encoding from the magic of a vectors file, without mapping the file.
+     *
+     * @param vectorsPath vectors file of a memory-mapped model
+     * @return encoding of the rows
+     * @throws IOException if an I/O error occurs reading the file or it is not a word vectors file
+     */
+    static VectorEncoding read(Path vectorsPath) throws IOException {
+        var magic = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        try (var channel = FileChannel.open(vectorsPath, StandardOpenOption.READ)) {
+            channel.read(magic, 0);
+        }
+        var encoding = magic.hasRemaining() ? null : fromMagic(magic.getInt(0));
+        if (encoding == null) {
+            throw new IOException(vectorsPath + " is not a word vectors file");
+        }
+        return encoding;
+    }
+
+    /**
+     * @param name e.g "float32", "float16", "int8"
+     * @return the encoding corresponding to name
+     */
+    public static VectorEncoding fromName(String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+
+    static float halfToFloat(short half) {
+        var bits = half & 0xffff;
+        var sign = (bits & 0x8000) << 16;
+        var exponent = (bits >>> 10) & 0x1f;
+        var mantissa = bits & 0x3ff;
+        if (exponent == 0x1f) {
+            // infinity or NaN
+            return Float.intBitsToFloat(sign | 0x7f800000 | (mantissa << 13));
+        }
+        if (exponent == 0) {
+            // zero or subnormal
+            var value = mantissa * 0x1p-24f;
+            return sign != 0 ? -value : value;
+        }
+        return Float.intBitsToFloat(sign | ((exponent + 112) << 23) | (mantissa << 13));
+    }
+
+    static short floatToHalf(float value) {
+        var bits = Float.floatToIntBits(value);
+        var sign = (bits >>> 16) & 0x8000;
+        var magnitude = bits & 0x7fffffff;
+        if (magnitude > 0x7f800000) {
+            return (short) (sign | 0x7e00); // NaN
+        }
+        if (magnitude >= 0x47800000) {
+            return (short) (sign | 0x7c00); // too large, infinity
+        }
+        if (magnitude < 0x38800000) {
+            // subnormal half or zero, rounded to nearest even
+            if (magnitude < 0x33000000) {
+                return (short) sign;
+            }
+            var mantissa = (magnitude & 0x7fffff) | 0x800000;
+            var shift = 126 - (magnitude >>> 23);
+            var half = mantissa >> shift;
+            var remainder = mantissa & ((1 << shift) - 1);
+            var midpoint = 1 << (shift - 1);
+            if (remainder > midpoint || (remainder == midpoint && (half & 1) != 0)) {
+                half++;
+            }
+            return (short) (sign | half);
+        }
+        // normal half, re-biased exponent and rounded to nearest even, a carry may round up to infinity
+        var half = (magnitude - 0x38000000) >>> 13;
+        var remainder = magnitude & 0x1fff;
+        if (remainder > 0x1000 || (remainder == 0x1000 && (half & 1) != 0)) {
+            half++;
+        }
+        return (short) (sign | half);
+    }
+}
@@ -0,0 +1,94 @@
+package word_embedding;
+
+/**
+ * Arithmetic over dense float vectors.
+ */
+public class VectorMath {
+
+    /**
+     * Adds the vector into the accumulator.
+     */
+    public static void add(float[] accumulator, float[] vector) {
+        for (int i = 0; i < accumulator.length; i++) {
+            accumulator[i] += vector[i];
+        }
+    }
+
+    public static void scale(float[] vector, float factor) {
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= factor;
+        }
+    }
+
+    /**
+     * @return a unit length copy of the vector, or null if the vector is null or zero
+     */
+    public static float[] normalize(float[] vector) {
+        if (vector == null) {
+            return null;
+        }
+        var norm = norm(vector);
+        if (norm == 0) {
+            return null;
+        }
+        var normalized = vector.clone();
+        scale(normalized, (float) (1 / norm));
+        return normalized;
+    }
+
+    public static double norm(float[] vector) {
+        double sumOfSquares = 0;
+        for (var value : vector) {
+            sumOfSquares += (double) value * value;
+        }
+        return Math.sqrt(sumOfSquares);
+    }
+
+    /**
+     * Cosine similarity of a unit length vector to another vector, which saves normalizing the unit vector
+     * for every comparison.
+     *
+     * @param unit   unit length vector, see {@link #normalize(float[])}
+     * @param vector any vector
+     * @return cosine similarity, or 0 if either vector is null or zero
+     */
+    public static double cosineSimToUnit(float[] unit, float[] vector) {
+        if (unit == null || vector == null) {
+            return 0;
+        }
+        double dot = 0;
+        double sumOfSquares = 0;
+        for (int i = 0; i < unit.length; i++) {
+            dot += (double) unit[i] * vector[i];
+            sumOfSquares += (double) vector[i] * vector[i];
+        }
+        if (sumOfSquares == 0) {
+            return 0;
+        }
+        return dot / Math.sqrt(sumOfSquares);
+    }
+
+    /**
+     * Cosine similarity of two vectors.
+     * A missing (null) or zero vector has no direction and is considered dissimilar to anything.
+     *
+     * @return cosine similarity, or 0 if either vector is null or zero
+     */
+    public static double cosineSim(float[] v1, float[] v2) {
+        if (v1 == null || v2 == null) {
+            return 0;
+        }
+        double dot = 0;
+        double norm1 = 0;
+        double norm2 = 0;
+        for (int i = 0; i < v1.length; i++) {
+            dot += (double) v1[i] * v2[i];
+            norm1 += (double) v1[i] * v1[i];
+            norm2 += (double) v2[i] * v2[i];
+        }
+        if (norm1 == 0 || norm2 == 0) {
+            return 0;
+        }
+        return dot / (Math.sqrt(norm1) * Math.sqrt(norm2));
+    }
+}
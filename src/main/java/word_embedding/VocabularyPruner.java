@@ -0,0 +1,100 @@
+package word_embedding;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.FieldInfos;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.MultiTerms;
+import org.apache.lucene.store.FSDirectory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+
+/**
+ * Writes a pruned copy of a model, holding only the words which can ever be looked up.
+ * <p>
+ * Every word the re-ranker looks up is produced by the English analyzer from the tables, the wiki articles or
+ * the query, which are the terms of the tables and wiki index term dictionaries and the analyzed queries.
+ * Words of ad-hoc queries which appear in neither index are not kept.
+ */
+public class VocabularyPruner implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger(VocabularyPruner.class);
+
+    private final WordEmbeddings source;
+    private final MappedWordEmbeddingsWriter writer;
+    private long candidates;
+
+    /**
+     * Pruner constructor, creates or truncates the pruned model files.
+     *
+     * @param source         full model
+     * @param prunedBasePath pruned model path without the file suffixes
+     * @param encoding       encoding of the pruned rows
+     * @throws IOException if an I/O error occurs creating the files
+     */
+    public VocabularyPruner(WordEmbeddings source, Path prunedBasePath, VectorEncoding encoding) throws IOException {
+        this.source = source;
+        this.writer = new MappedWordEmbeddingsWriter(prunedBasePath, source.dimension(), encoding);
+    }
+
+    /**
+     * Keeps the words among the terms of every indexed field of the index.
+     *
+     * @param indexDirectory location of the index directory
+     * @throws IOException if an I/O error occurs reading the index or writing the model
+     */
+    public void addIndexTerms(Path indexDirectory) throws IOException {
+        try (var directory = FSDirectory.open(indexDirectory);
+             var reader = DirectoryReader.open(directory)) {
+            for (var fieldInfo : FieldInfos.getMergedFieldInfos(reader)) {
+                if (fieldInfo.getIndexOptions() == IndexOptions.NONE) {
+                    continue;
+                }
+                var terms = MultiTerms.getTerms(reader, fieldInfo.name);
+                if (terms == null) {
+                    continue;
+                }
+                logger.info("Pruning vocabulary against field " + fieldInfo.name + " of " + indexDirectory);
+                var termsEnum = terms.iterator();
+                for (var term = termsEnum.next(); term != null; term = termsEnum.next()) {
+                    add(term.utf8ToString());
+                }
+            }
+        }
+    }
+
+    /**
+     * Keeps the words among the given tokens.
+     *
+     * @param tokens analyzed tokens
+     * @throws IOException if an I/O error occurs writing the model
+     */
+    public void addTokens(Collection<String> tokens) throws IOException {
+        for (var token : tokens) {
+            add(token);
+        }
+    }
+
+    private void add(String word) throws IOException {
+        candidates++;
+        var vector = source.getWordVector(word);
+        if (vector != null) {
+            writer.add(word, vector);
+        }
+    }
+
+    /**
+     * Writes the pruned vocabulary.
+     *
+     * @throws IOException if an I/O error occurs writing the model
+     */
+    @Override
+    public void close() throws IOException {
+        writer.close();
+        logger.info(String.format("Looked up %d terms, kept %d words", candidates, writer.size()));
+    }
+}
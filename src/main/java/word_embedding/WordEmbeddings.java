@@ -0,0 +1,86 @@
+package word_embedding;
+
+import org.apache.lucene.util.IntsRef;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Read access to a word embedding model.
+ * Implementations are safe to share between threads.
+ */
+public interface WordEmbeddings {
+
+    int UNKNOWN_WORD = -1;
+
+    /**
+     * @return number of dimensions of every word vector
+     */
+    int dimension();
+
+    /**
+     * @param word word to look for
+     * @return true if the model has a vector for the word
+     */
+    boolean hasWord(String word);
+
+    /**
+     * @param word word to look for
+     * @return vector of the word, or null if the word is unknown
+     */
+    float[] getWordVector(String word);
+
+    /**
+     * Id of a word given as characters, so callers holding a term buffer need not create a String.
+     *
+     * @param chars  buffer holding the word
+     * @param offset offset of the word in the buffer
+     * @param length length of the word
+     * @return id of the word, or {@link #UNKNOWN_WORD}
+     */
+    int wordId(char[] chars, int offset, int length);
+
+    /**
+     * Mean of the vectors of word ids written into the given vector, see {@link #wordId(char[], int, int)}.
+     *
+     * @param ids  ids of known words, repeated ids are counted once per occurrence
+     * @param mean vector of {@link #dimension()} floats, overwritten with the mean
+     * @return false if there are no ids, mean is then zero
+     */
+    boolean getWordVectorsMean(IntsRef ids, float[] mean);
+
+    /**
+     * Mean of the vectors of the known words, repeated words are counted once per occurrence.
+     *
+     * @param words words to average
+     * @return mean vector, or null if none of the words is known
+     */
+    default float[] getWordVectorsMean(Collection<String> words) {
+        var mean = new float[dimension()];
+        return getWordVectorsMean(words, mean) ? mean : null;
+    }
+
+    /**
+     * Mean of the vectors of the known words written into the given vector.
+     *
+     * @param words words to average
+     * @param mean  vector of {@link #dimension()} floats, overwritten with the mean
+     * @return false if none of the words is known, mean is then zero
+     */
+    default boolean getWordVectorsMean(Collection<String> words, float[] mean) {
+        Arrays.fill(mean, 0f);
+        var count = 0;
+        for (var word : words) {
+            var vector = getWordVector(word);
+            if (vector != null) {
+                VectorMath.add(mean, vector);
+                count++;
+            }
+        }
+        if (count == 0) {
+            return false;
+        }
+        VectorMath.scale(mean, 1f / count);
+        return true;
+    }
+}
@@ -6,13 +6,18 @@ import org.deeplearning4j.models.embeddings.loader.WordVectorSerializer;
 import org.deeplearning4j.models.embeddings.wordvectors.WordVectors;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
 
 
 public class WordVectorBuilder {
 
     private static final Logger logger = LogManager.getLogger();
 
+    private static final String SOURCE_SUFFIX = ".source";
+
     public WordVectorBuilder() {
 
     }
@@ -22,4 +27,137 @@ public class WordVectorBuilder {
         return WordVectorSerializer.readWord2VecModel(path.toFile());
 //        return WordVectorSerializer.readWordVectors(path.toFile());
     }
+
+    /**
+     * Opens the pruned model if it exists and was pruned from the given source, otherwise the full model, see
+     * {@link #buildEmbeddings(Path, Path)}. A pruned model of another source lacks the words of re-built indexes
+     * or edited queries, so it is passed over with a warning.
+     *
+     * @param modelPath      word2vec model file
+     * @param mappedBasePath converted model path without the file suffixes
+     * @param prunedBasePath pruned model path without the file suffixes
+     * @param prunedSource   description of the indexes and queries the model is pruned for, as given to
+     *                       {@link #prune(Path, Path, Path, Collection, Collection, VectorEncoding, String)}
+     * @return word embeddings
+     * @throws IOException if an I/O error occurs reading the model
+     */
+    public WordEmbeddings buildEmbeddings(Path modelPath, Path mappedBasePath, Path prunedBasePath,
+                                          String prunedSource) throws IOException {
+        if (MappedWordEmbeddings.exists(prunedBasePath)) {
+            if (isPrunedFrom(prunedBasePath, prunedSource)) {
+                logger.info(String.format("Mapping pruned word vectors from %s ...", prunedBasePath));
+                return MappedWordEmbeddings.open(prunedBasePath);
+            }
+            logger.warn(String.format("Pruned word vectors %s were pruned from other indexes or queries, using the"
+                    + " full model. Re-run --prune_vectors to prune them again", prunedBasePath));
+        }
+        return buildEmbeddings(modelPath, mappedBasePath);
+    }
+
+    /**
+     * Identity of the model {@link #buildEmbeddings(Path, Path, Path, String)} loads: the files it is read from
+     * with their sizes and modification times, and the encoding of a converted model. It changes whenever the
+     * model is converted, re-encoded or pruned again.
+     *
+     * @param modelPath      word2vec model file
+     * @param mappedBasePath converted model path without the file suffixes
+     * @param prunedBasePath pruned model path without the file suffixes
+     * @param prunedSource   description of the indexes and queries the model is pruned for
+     * @return version of the model
+     * @throws IOException if an I/O error occurs reading the model files attributes
+     */
+    public String modelVersion(Path modelPath, Path mappedBasePath, Path prunedBasePath, String prunedSource)
+            throws IOException {
+        if (MappedWordEmbeddings.exists(prunedBasePath) && isPrunedFrom(prunedBasePath, prunedSource)) {
+            return mappedModelVersion(prunedBasePath);
+        }
+        if (MappedWordEmbeddings.exists(mappedBasePath)) {
+            return mappedModelVersion(mappedBasePath);
+        }
+        return fileVersion(modelPath);
+    }
+
+    private static String mappedModelVersion(Path basePath) throws IOException {
+        return fileVersion(MappedWordEmbeddings.vocabPath(basePath)) + ","
+                + fileVersion(MappedWordEmbeddings.vectorsPath(basePath)) + ","
+                + VectorEncoding.read(MappedWordEmbeddings.vectorsPath(basePath));
+    }
+
+    private static String fileVersion(Path path) throws IOException {
+        return path.toAbsolutePath() + ":" + Files.size(path) + ":" + Files.getLastModifiedTime(path).toMillis();
+    }
+
+    private static boolean isPrunedFrom(Path prunedBasePath, String prunedSource) throws IOException {
+        var sourcePath = prunedSourcePath(prunedBasePath);
+        return Files.isRegularFile(sourcePath) && Files.readString(sourcePath).equals(prunedSource);
+    }
+
+    static Path prunedSourcePath(Path prunedBasePath) {
+        return Paths.get(prunedBasePath + SOURCE_SUFFIX);
+    }
+
+    /**
+     * Opens the memory-mapped model if it was converted, otherwise loads the word2vec model on the heap.
+     *
+     * @param modelPath      word2vec model file
+     * @param mappedBasePath converted model path without the file suffixes
+     * @return word embeddings
+     * @throws IOException if an I/O error occurs reading the model
+     */
+    public WordEmbeddings buildEmbeddings(Path modelPath, Path mappedBasePath) throws IOException {
+        if (MappedWordEmbeddings.exists(mappedBasePath)) {
+            logger.info(String.format("Mapping word vectors from %s ...", mappedBasePath));
+            return MappedWordEmbeddings.open(mappedBasePath);
+        }
+        logger.info(String.format("No converted word vectors under %s", mappedBasePath));
+        return new DL4JWordEmbeddings(buildFromFile(modelPath));
+    }
+
+    /**
+     * Converts the word2vec model to the memory-mapped format, see {@link MappedWordEmbeddings}.
+     *
+     * @param modelPath      word2vec model file
+     * @param mappedBasePath converted model path without the file suffixes
+     * @param encoding       encoding of the converted rows
+     * @throws IOException if an I/O error occurs reading or writing the model
+     */
+    public void convert(Path modelPath, Path mappedBasePath, VectorEncoding encoding) throws IOException {
+        var embeddings = new DL4JWordEmbeddings(buildFromFile(modelPath));
+        logger.info(String.format("Converting word vectors to %s (%s) ...", mappedBasePath, encoding));
+        try (var writer = new MappedWordEmbeddingsWriter(mappedBasePath, embeddings.dimension(), encoding)) {
+            for (var word : embeddings.words()) {
+                writer.add(word, embeddings.getWordVector(word));
+            }
+        }
+        logger.info(String.format("Converted word vectors to %s", mappedBasePath));
+    }
+
+    /**
+     * Writes a copy of the full model pruned to the vocabulary reachable from the indexes and the queries,
+     * see {@link VocabularyPruner}.
+     *
+     * @param modelPath        word2vec model file
+     * @param mappedBasePath   converted model path without the file suffixes
+     * @param prunedBasePath   pruned model path without the file suffixes
+     * @param indexDirectories indexes whose terms are kept
+     * @param queryTokens      analyzed query tokens which are kept
+     * @param encoding         encoding of the pruned rows
+     * @param prunedSource     description of the indexes and queries, written next to the pruned model so it is
+     *                         only used while they are unchanged
+     * @throws IOException if an I/O error occurs reading or writing the model or reading the indexes
+     */
+    public void prune(Path modelPath, Path mappedBasePath, Path prunedBasePath,
+                      Collection<Path> indexDirectories, Collection<String> queryTokens,
+                      VectorEncoding encoding, String prunedSource) throws IOException {
+        var source = buildEmbeddings(modelPath, mappedBasePath);
+        logger.info(String.format("Pruning word vectors to %s (%s) ...", prunedBasePath, encoding));
+        try (var pruner = new VocabularyPruner(source, prunedBasePath, encoding)) {
+            for (var indexDirectory : indexDirectories) {
+                pruner.addIndexTerms(indexDirectory);
+            }
+            pruner.addTokens(queryTokens);
+        }
+        Files.writeString(prunedSourcePath(prunedBasePath), prunedSource);
+        logger.info(String.format("Pruned word vectors to %s", prunedBasePath));
+    }
 }